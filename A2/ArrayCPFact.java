@@ -0,0 +1,285 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis.constprop;
+
+import pascal.taie.analysis.dataflow.fact.MapFact;
+import pascal.taie.ir.exp.Var;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@link CPFact} which stores the encoded value (see {@link EncodedValues})
+ * of each variable in an array indexed by {@link Var#getIndex()}.
+ * Meet, copy and change detection between such facts are plain loops
+ * over primitive arrays and do not allocate.
+ * <p>
+ * The map inherited from {@link MapFact} is left empty, thus every
+ * method of {@link MapFact} is overridden on the array.
+ * All variables in a fact must belong to the same method.
+ */
+public class ArrayCPFact extends CPFact {
+
+    private static final long[] EMPTY = new long[0];
+
+    /**
+     * Variables of the method, indexed by {@link Var#getIndex()}.
+     * It is resolved from the first variable updated in this fact
+     * and is shared among the copies of this fact.
+     */
+    private List<Var> vars;
+
+    private long[] values;
+
+    public ArrayCPFact() {
+        this(null, EMPTY);
+    }
+
+    private ArrayCPFact(List<Var> vars, long[] values) {
+        this.vars = vars;
+        this.values = values;
+    }
+
+    @Override
+    public Value get(Var key) {
+        return EncodedValues.decode(getCode(key));
+    }
+
+    /**
+     * @return the encoded value of given variable.
+     */
+    long getCode(Var key) {
+        int index = key.getIndex();
+        return index < values.length ? values[index] : EncodedValues.UNDEF;
+    }
+
+    @Override
+    public boolean update(Var key, Value value) {
+        return updateCode(key, EncodedValues.encode(value));
+    }
+
+    /**
+     * Updates the encoded value of given variable.
+     *
+     * @return true if the fact changed as a result of the call.
+     */
+    boolean updateCode(Var key, long code) {
+        int index = key.getIndex();
+        if (index >= values.length) {
+            if (code == EncodedValues.UNDEF) {
+                return false;
+            }
+            if (vars == null) {
+                vars = key.getMethod().getIR().getVars();
+            }
+            values = Arrays.copyOf(values,
+                    Math.max(index + 1, vars.size()));
+        }
+        if (values[index] != code) {
+            values[index] = code;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Value remove(Var key) {
+        int index = key.getIndex();
+        if (index < values.length && values[index] != EncodedValues.UNDEF) {
+            long old = values[index];
+            values[index] = EncodedValues.UNDEF;
+            return EncodedValues.decode(old);
+        }
+        return null;
+    }
+
+    /**
+     * Meets given fact into this fact.
+     *
+     * @return true if this fact changed as a result of the call.
+     */
+    boolean meet(ArrayCPFact fact) {
+        adoptShape(fact);
+        long[] other = fact.values;
+        boolean changed = false;
+        for (int i = 0; i < other.length; ++i) {
+            long code = EncodedValues.meet(values[i], other[i]);
+            if (values[i] != code) {
+                values[i] = code;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Copies all non-UNDEF values of given fact into this fact.
+     */
+    @Override
+    public boolean copyFrom(MapFact<Var, Value> fact) {
+        if (fact instanceof ArrayCPFact arrayFact) {
+            return copyFromExcept(arrayFact, null);
+        }
+        // reads the entries of the other fact through its methods,
+        // which may be overridden as well
+        boolean changed = false;
+        for (Map.Entry<Var, Value> entry : fact.entries().toList()) {
+            changed |= update(entry.getKey(), entry.getValue());
+        }
+        return changed;
+    }
+
+    /**
+     * Copies all non-UNDEF values of given fact, except the value of
+     * {@code except} (which may be null), into this fact.
+     *
+     * @return true if this fact changed as a result of the call.
+     */
+    boolean copyFromExcept(ArrayCPFact fact, Var except) {
+        adoptShape(fact);
+        long[] other = fact.values;
+        int skip = except != null ? except.getIndex() : -1;
+        boolean changed = false;
+        for (int i = 0; i < other.length; ++i) {
+            if (i != skip && other[i] != EncodedValues.UNDEF
+                    && values[i] != other[i]) {
+                values[i] = other[i];
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Makes sure that this fact can hold all variables of given fact.
+     */
+    private void adoptShape(ArrayCPFact fact) {
+        if (vars == null) {
+            vars = fact.vars;
+        }
+        if (values.length < fact.values.length) {
+            values = Arrays.copyOf(values, fact.values.length);
+        }
+    }
+
+    @Override
+    public ArrayCPFact copy() {
+        return new ArrayCPFact(vars, values.clone());
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, EncodedValues.UNDEF);
+    }
+
+    @Override
+    public Set<Var> keySet() {
+        return indexes().mapToObj(i -> vars.get(i))
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    @Override
+    public Stream<Map.Entry<Var, Value>> entries() {
+        return indexes().mapToObj(i ->
+                Map.entry(vars.get(i), EncodedValues.decode(values[i])));
+    }
+
+    @Override
+    public Collection<Value> values() {
+        return indexes().mapToObj(i -> EncodedValues.decode(values[i]))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void forEach(BiConsumer<Var, Value> action) {
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i] != EncodedValues.UNDEF) {
+                action.accept(vars.get(i), EncodedValues.decode(values[i]));
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (long code : values) {
+            if (code != EncodedValues.UNDEF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return (int) indexes().count();
+    }
+
+    /**
+     * @return indexes of the variables whose values are not UNDEF.
+     */
+    private IntStream indexes() {
+        return IntStream.range(0, values.length)
+                .filter(i -> values[i] != EncodedValues.UNDEF);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof ArrayCPFact other) {
+            long[] longer = values.length >= other.values.length
+                    ? values : other.values;
+            long[] shorter = longer == values ? other.values : values;
+            for (int i = 0; i < longer.length; ++i) {
+                long code = i < shorter.length ? shorter[i] : EncodedValues.UNDEF;
+                if (longer[i] != code) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // like MapFact, facts of different classes are never equal,
+        // which keeps equals() symmetric with plain CPFacts
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return entries().mapToInt(Map.Entry::hashCode).sum();
+    }
+
+    @Override
+    public String toString() {
+        return entries().map(Object::toString)
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.fact;
+
+import pascal.taie.ir.exp.RValue;
+import pascal.taie.ir.exp.Var;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@link SetFact} of variables backed by a bit vector.
+ * Variables of a method are densely numbered by {@link Var#getIndex()},
+ * thus union, difference and equality checks of two such facts
+ * are word-level operations on their {@code long} words.
+ * <p>
+ * The set inherited from {@link SetFact} is left empty, thus every
+ * method of {@link SetFact} is overridden on the bit vector.
+ * All variables in a fact must belong to the same method.
+ */
+public class BitVarSetFact extends SetFact<Var> {
+
+    private static final long[] NO_WORDS = new long[0];
+
+    /**
+     * Variables of the method, indexed by {@link Var#getIndex()}.
+     * It is resolved from the first variable added to this fact
+     * and is shared among the copies of this fact.
+     */
+    private List<Var> vars;
+
+    /**
+     * Bit {@code i % 64} of {@code words[i / 64]} is set iff
+     * the variable of index {@code i} is in this fact.
+     * Words beyond the length of the array are zero.
+     */
+    private long[] words;
+
+    public BitVarSetFact() {
+        this(null, NO_WORDS);
+    }
+
+    private BitVarSetFact(List<Var> vars, long[] words) {
+        this.vars = vars;
+        this.words = words;
+    }
+
+    @Override
+    public boolean contains(Var var) {
+        int index = var.getIndex();
+        int w = index >>> 6;
+        return w < words.length && (words[w] & (1L << index)) != 0;
+    }
+
+    @Override
+    public boolean add(Var var) {
+        int index = var.getIndex();
+        int w = index >>> 6;
+        ensureCapacity(w + 1);
+        long old = words[w];
+        words[w] = old | (1L << index);
+        if (old == words[w]) {
+            return false;
+        }
+        if (vars == null) {
+            vars = var.getMethod().getIR().getVars();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(Var var) {
+        int index = var.getIndex();
+        int w = index >>> 6;
+        if (w < words.length && (words[w] & (1L << index)) != 0) {
+            words[w] &= ~(1L << index);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<Var> filter) {
+        boolean changed = false;
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            if (filter.test(vars.get(i))) {
+                words[i >>> 6] &= ~(1L << i);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean removeAll(SetFact<Var> other) {
+        if (other instanceof BitVarSetFact o) {
+            long changed = 0;
+            for (int i = Math.min(words.length, o.words.length) - 1; i >= 0; --i) {
+                long old = words[i];
+                words[i] = old & ~o.words[i];
+                changed |= old ^ words[i];
+            }
+            return changed != 0;
+        }
+        return other.stream()
+                .map(this::remove)
+                .reduce(false, Boolean::logicalOr);
+    }
+
+    @Override
+    public boolean union(SetFact<Var> other) {
+        if (other instanceof BitVarSetFact o) {
+            if (vars == null) {
+                vars = o.vars;
+            }
+            ensureCapacity(o.words.length);
+            long changed = 0;
+            for (int i = 0; i < o.words.length; ++i) {
+                long old = words[i];
+                words[i] = old | o.words[i];
+                changed |= old ^ words[i];
+            }
+            return changed != 0;
+        }
+        return other.stream()
+                .map(this::add)
+                .reduce(false, Boolean::logicalOr);
+    }
+
+    @Override
+    public BitVarSetFact unionWith(SetFact<Var> other) {
+        BitVarSetFact result = copy();
+        result.union(other);
+        return result;
+    }
+
+    @Override
+    public boolean intersect(SetFact<Var> other) {
+        if (other instanceof BitVarSetFact o) {
+            long changed = 0;
+            for (int i = 0; i < words.length; ++i) {
+                long old = words[i];
+                words[i] = i < o.words.length ? old & o.words[i] : 0;
+                changed |= old ^ words[i];
+            }
+            return changed != 0;
+        }
+        return removeIf(v -> !other.contains(v));
+    }
+
+    @Override
+    public BitVarSetFact intersectWith(SetFact<Var> other) {
+        BitVarSetFact result = copy();
+        result.intersect(other);
+        return result;
+    }
+
+    @Override
+    public void set(SetFact<Var> other) {
+        clear();
+        union(other);
+    }
+
+    /**
+     * Sets this fact to {@code gen U (other - kill)} in place,
+     * which is the transfer function of liveness:
+     * {@code IN = use U (OUT - def)}.
+     * Each word is computed from {@code other} and compared with
+     * the old word, so no intermediate fact is allocated.
+     *
+     * @param gen   expressions whose variables are added,
+     *              expressions other than {@link Var}s are ignored
+     * @param other the fact to compute from, it is not modified
+     * @param kill  the variable removed from {@code other},
+     *              or {@code null} if none is removed
+     * @return {@code true} if this fact has changed.
+     */
+    public boolean setToUnionMinus(List<? extends RValue> gen,
+                                   BitVarSetFact other, Var kill) {
+        if (vars == null) {
+            vars = other.vars;
+        }
+        int length = other.words.length;
+        for (RValue exp : gen) {
+            if (exp instanceof Var var) {
+                length = Math.max(length, (var.getIndex() >>> 6) + 1);
+                if (vars == null) {
+                    vars = var.getMethod().getIR().getVars();
+                }
+            }
+        }
+        ensureCapacity(length);
+        long changed = 0;
+        for (int i = 0; i < words.length; ++i) {
+            long word = i < other.words.length ? other.words[i] : 0;
+            if (kill != null && kill.getIndex() >>> 6 == i) {
+                word &= ~(1L << kill.getIndex());
+            }
+            // statements use a handful of variables
+            for (RValue exp : gen) {
+                if (exp instanceof Var var && var.getIndex() >>> 6 == i) {
+                    word |= 1L << var.getIndex();
+                }
+            }
+            changed |= words[i] ^ word;
+            words[i] = word;
+        }
+        return changed != 0;
+    }
+
+    @Override
+    public BitVarSetFact copy() {
+        return new BitVarSetFact(vars, words.clone());
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return nextSetBit(0) < 0;
+    }
+
+    @Override
+    public Stream<Var> stream() {
+        return IntStream.iterate(nextSetBit(0), i -> i >= 0, i -> nextSetBit(i + 1))
+                .mapToObj(i -> vars.get(i));
+    }
+
+    @Override
+    public void forEach(Consumer<Var> action) {
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            action.accept(vars.get(i));
+        }
+    }
+
+    /**
+     * Iterates the variables in this fact in order of their indexes,
+     * which is cheaper than {@link #stream()} for frequent small loops.
+     * This fact is not {@link Iterable} itself, as
+     * {@link Iterable#forEach} would clash with {@link #forEach(Consumer)}.
+     */
+    public Iterable<Var> elements() {
+        return this::iterator;
+    }
+
+    private Iterator<Var> iterator() {
+        return new Iterator<>() {
+
+            private int next = nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Var next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                Var var = vars.get(next);
+                next = nextSetBit(next + 1);
+                return var;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (long word : words) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof BitVarSetFact other) {
+            long[] longer = words.length >= other.words.length ? words : other.words;
+            long[] shorter = longer == words ? other.words : words;
+            for (int i = 0; i < longer.length; ++i) {
+                if (longer[i] != (i < shorter.length ? shorter[i] : 0)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // a plain SetFact compares its own (here empty) set, thus it is
+        // never equal to this fact, which keeps equals() symmetric
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return stream().mapToInt(Var::hashCode).sum();
+    }
+
+    @Override
+    public String toString() {
+        return stream().map(Var::toString)
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    /**
+     * @return index of the first variable in this fact whose index is
+     * {@code from} or greater, or -1 if there is no such variable.
+     */
+    private int nextSetBit(int from) {
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    private void ensureCapacity(int length) {
+        if (words.length < length) {
+            words = Arrays.copyOf(words, Math.max(length, 2 * words.length));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.solver;
+
+import pascal.taie.analysis.dataflow.analysis.DataflowAnalysis;
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data-flow result of {@link BlockSolver}, which stores facts only at the
+ * boundaries of basic blocks, i.e., the IN fact of the first node and the
+ * OUT fact of the last node of each block. The facts of other nodes are
+ * re-derived on demand by replaying the transfer functions of the block.
+ */
+class BlockDataflowResult<Node, Fact> extends DataflowResult<Node, Fact> {
+
+    private final DataflowAnalysis<Node, Fact> analysis;
+
+    /**
+     * Basic blocks in the order they are solved.
+     */
+    private final List<List<Node>> blocks;
+
+    /**
+     * Maps each node to the block containing it.
+     */
+    private final Map<Node, List<Node>> blockOf;
+
+    /**
+     * Maps each node to its position in its block.
+     */
+    private final Map<Node, Integer> positions;
+
+    /**
+     * The most recently replayed block and its facts. Clients usually
+     * query the nodes of a block one after another, so caching a single
+     * block avoids most replays.
+     */
+    private List<Node> replayedBlock;
+
+    private List<Fact> replayedInFacts;
+
+    private List<Fact> replayedOutFacts;
+
+    BlockDataflowResult(DataflowAnalysis<Node, Fact> analysis,
+                        List<List<Node>> blocks,
+                        Map<Node, List<Node>> blockOf,
+                        Map<Node, Integer> positions) {
+        this.analysis = analysis;
+        this.blocks = blocks;
+        this.blockOf = blockOf;
+        this.positions = positions;
+    }
+
+    List<List<Node>> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @return true if the IN fact of given node is stored, i.e., the node
+     * is the first node of its block, or does not belong to any block.
+     */
+    boolean keepsInFact(Node node) {
+        List<Node> block = blockOf.get(node);
+        return block == null || block.get(0) == node;
+    }
+
+    /**
+     * @return true if the OUT fact of given node is stored, i.e., the node
+     * is the last node of its block, or does not belong to any block.
+     */
+    boolean keepsOutFact(Node node) {
+        List<Node> block = blockOf.get(node);
+        return block == null || block.get(block.size() - 1) == node;
+    }
+
+    /**
+     * Stores the IN fact of the first node of a block, and ignores
+     * the IN facts of the other nodes, which are re-derived.
+     */
+    @Override
+    public void setInFact(Node node, Fact fact) {
+        List<Node> block = blockOf.get(node);
+        if (block == null || block.get(0) == node) {
+            super.setInFact(node, fact);
+            if (block == replayedBlock) {
+                replayedBlock = null;
+            }
+        }
+    }
+
+    /**
+     * Stores the OUT fact of the last node of a block, and ignores
+     * the OUT facts of the other nodes, which are re-derived.
+     */
+    @Override
+    public void setOutFact(Node node, Fact fact) {
+        List<Node> block = blockOf.get(node);
+        if (block == null || block.get(block.size() - 1) == node) {
+            super.setOutFact(node, fact);
+            if (block == replayedBlock) {
+                replayedBlock = null;
+            }
+        }
+    }
+
+    @Override
+    public Fact getInFact(Node node) {
+        List<Node> block = blockOf.get(node);
+        if (block == null || block.get(0) == node) {
+            return super.getInFact(node);
+        }
+        replay(block);
+        return replayedInFacts.get(positions.get(node));
+    }
+
+    @Override
+    public Fact getOutFact(Node node) {
+        List<Node> block = blockOf.get(node);
+        if (block == null || block.get(block.size() - 1) == node) {
+            return super.getOutFact(node);
+        }
+        replay(block);
+        return replayedOutFacts.get(positions.get(node));
+    }
+
+    /**
+     * Re-derives the facts of all nodes in given block from the facts
+     * stored at its boundaries. The OUT fact of a node is the IN fact
+     * of the next node, as a node inside a block has only one predecessor.
+     */
+    private void replay(List<Node> block) {
+        if (block == replayedBlock) {
+            return;
+        }
+        int last = block.size() - 1;
+        List<Fact> inFacts = new ArrayList<>(Collections.nCopies(block.size(), null));
+        List<Fact> outFacts = new ArrayList<>(Collections.nCopies(block.size(), null));
+        if (analysis.isForward()) {
+            Fact in = super.getInFact(block.get(0));
+            for (int i = 0; i <= last; ++i) {
+                Fact out;
+                if (i == last) {
+                    out = super.getOutFact(block.get(last));
+                } else {
+                    out = analysis.newInitialFact();
+                    analysis.transferNode(block.get(i), in, out);
+                }
+                inFacts.set(i, in);
+                outFacts.set(i, out);
+                in = out;
+            }
+        } else {
+            Fact out = super.getOutFact(block.get(last));
+            for (int i = last; i >= 0; --i) {
+                Fact in;
+                if (i == 0) {
+                    in = super.getInFact(block.get(0));
+                } else {
+                    in = analysis.newInitialFact();
+                    analysis.transferNode(block.get(i), in, out);
+                }
+                inFacts.set(i, in);
+                outFacts.set(i, out);
+                out = in;
+            }
+        }
+        replayedBlock = block;
+        replayedInFacts = inFacts;
+        replayedOutFacts = outFacts;
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.solver;
+
+import pascal.taie.analysis.dataflow.analysis.DataflowAnalysis;
+import pascal.taie.analysis.dataflow.analysis.GenKillAnalysis;
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.dataflow.fact.SetFact;
+import pascal.taie.analysis.graph.cfg.CFG;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Work-list solver on basic blocks, i.e., maximal straight-line sequences
+ * of nodes, instead of single nodes. Only the facts at the boundaries of
+ * blocks are stored, see {@link BlockDataflowResult}.
+ * <p>
+ * If the analysis is a {@link GenKillAnalysis}, the transfer functions of
+ * each block are composed into one gen/kill summary up front. Otherwise,
+ * they are applied one after another whenever the block is visited.
+ * <p>
+ * Constant propagation is not a {@link GenKillAnalysis}, and its blocks
+ * have no composed summary: every visit of a block replays the transfer
+ * function of each of its statements, with a fresh fact between two
+ * statements. For it, this solver saves visits and stored facts at
+ * statements inside blocks, but not the work of a block visit.
+ */
+class BlockSolver<Node, Fact> extends Solver<Node, Fact> {
+
+    BlockSolver(DataflowAnalysis<Node, Fact> analysis) {
+        super(analysis);
+    }
+
+    @Override
+    protected DataflowResult<Node, Fact> newResult(CFG<Node> cfg) {
+        List<List<Node>> blocks = new ArrayList<>();
+        Map<Node, List<Node>> blockOf = new HashMap<>();
+        Map<Node, Integer> positions = new HashMap<>();
+        for (Node node : cfg.getNodes()) {
+            if (isLeader(cfg, node)) {
+                blocks.add(buildBlock(cfg, node, blockOf, positions));
+            }
+        }
+        // nodes on a cycle of straight-line nodes, which has no leader
+        for (Node node : cfg.getNodes()) {
+            if (!blockOf.containsKey(node)) {
+                blocks.add(buildBlock(cfg, node, blockOf, positions));
+            }
+        }
+        // solves blocks in reverse postorder of the nodes they are entered by
+        boolean forward = analysis.isForward();
+        Map<Node, Integer> indexes = indexNodes(computeReversePostOrder(cfg, forward));
+        blocks.sort(Comparator.comparing(block -> indexes.get(headOf(block, forward))));
+        return new BlockDataflowResult<>(analysis, blocks, blockOf, positions);
+    }
+
+    /**
+     * @return true if given node cannot be appended to the block of
+     * its predecessor. The entry and the exit are blocks on their own.
+     */
+    private static <Node> boolean isLeader(CFG<Node> cfg, Node node) {
+        if (cfg.isEntry(node) || cfg.isExit(node)) {
+            return true;
+        }
+        Set<Node> preds = cfg.getPredsOf(node);
+        if (preds.size() != 1) {
+            return true;
+        }
+        Node pred = preds.iterator().next();
+        return cfg.isEntry(pred) || cfg.getSuccsOf(pred).size() != 1;
+    }
+
+    private static <Node> List<Node> buildBlock(
+            CFG<Node> cfg, Node leader,
+            Map<Node, List<Node>> blockOf, Map<Node, Integer> positions) {
+        List<Node> block = new ArrayList<>();
+        Node node = leader;
+        while (true) {
+            blockOf.put(node, block);
+            positions.put(node, block.size());
+            block.add(node);
+            if (cfg.isExit(node)) {
+                break;
+            }
+            Set<Node> succs = cfg.getSuccsOf(node);
+            if (succs.size() != 1) {
+                break;
+            }
+            Node succ = succs.iterator().next();
+            if (isLeader(cfg, succ) || blockOf.containsKey(succ)) {
+                break;
+            }
+            node = succ;
+        }
+        return block;
+    }
+
+    /**
+     * @return the node by which facts flow into given block,
+     * i.e., its first node if forward, otherwise its last node.
+     */
+    private static <Node> Node headOf(List<Node> block, boolean forward) {
+        return forward ? block.get(0) : block.get(block.size() - 1);
+    }
+
+    @Override
+    protected void initializeForward(CFG<Node> cfg, DataflowResult<Node, Fact> result) {
+        initializeBlocks(result);
+        result.setOutFact(cfg.getEntry(), analysis.newBoundaryFact(cfg));
+    }
+
+    @Override
+    protected void initializeBackward(CFG<Node> cfg, DataflowResult<Node, Fact> result) {
+        initializeBlocks(result);
+        result.setInFact(cfg.getExit(), analysis.newBoundaryFact(cfg));
+    }
+
+    private void initializeBlocks(DataflowResult<Node, Fact> result) {
+        for (List<Node> block : ((BlockDataflowResult<Node, Fact>) result).getBlocks()) {
+            result.setInFact(block.get(0), analysis.newInitialFact());
+            result.setOutFact(block.get(block.size() - 1), analysis.newInitialFact());
+        }
+    }
+
+    @Override
+    protected void doSolveForward(CFG<Node> cfg, DataflowResult<Node, Fact> result) {
+        solveBlocks(cfg, (BlockDataflowResult<Node, Fact>) result, true);
+    }
+
+    @Override
+    protected void doSolveBackward(CFG<Node> cfg, DataflowResult<Node, Fact> result) {
+        solveBlocks(cfg, (BlockDataflowResult<Node, Fact>) result, false);
+    }
+
+    private void solveBlocks(CFG<Node> cfg, BlockDataflowResult<Node, Fact> result,
+                             boolean forward) {
+        List<List<Node>> blocks = result.getBlocks();
+        List<Node> heads = new ArrayList<>(blocks.size());
+        for (List<Node> block : blocks) {
+            heads.add(headOf(block, forward));
+        }
+        Map<Node, Integer> indexes = indexNodes(heads);
+        List<Summary<?>> summaries = summarize(blocks, forward);
+        BitSet workList = new BitSet(blocks.size());
+        workList.set(0, blocks.size());
+        workList.clear(indexes.get(forward ? cfg.getEntry() : cfg.getExit()));
+        for (int i = workList.nextSetBit(0); i >= 0; i = workList.nextSetBit(0)) {
+            workList.clear(i);
+            recordVisit();
+            List<Node> block = blocks.get(i);
+            Node first = block.get(0);
+            Node last = block.get(block.size() - 1);
+            Fact in = result.getInFact(first);
+            Fact out = result.getOutFact(last);
+            if (forward) {
+                for (Node pred : cfg.getPredsOf(first)) {
+                    meetInto(result.getOutFact(pred), in);
+                }
+            } else {
+                for (Node succ : cfg.getSuccsOf(last)) {
+                    meetInto(result.getInFact(succ), out);
+                }
+            }
+            boolean changed = summaries != null
+                    ? applySummary(summaries.get(i), in, out, forward)
+                    : transferBlock(block, in, out, forward);
+            if (changed) {
+                for (Node next : nextsOf(cfg, forward ? last : first, forward)) {
+                    workList.set(indexes.get(next));
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the transfer functions of the nodes in given block in order.
+     *
+     * @return true if the output fact of the block has been changed.
+     */
+    private boolean transferBlock(List<Node> block, Fact in, Fact out, boolean forward) {
+        int last = block.size() - 1;
+        if (forward) {
+            for (int i = 0; i < last; ++i) {
+                Fact next = analysis.newInitialFact();
+                transferNode(block.get(i), in, next);
+                in = next;
+            }
+            return transferNode(block.get(last), in, out);
+        } else {
+            for (int i = last; i > 0; --i) {
+                Fact prev = analysis.newInitialFact();
+                transferNode(block.get(i), prev, out);
+                out = prev;
+            }
+            return transferNode(block.get(0), in, out);
+        }
+    }
+
+    /**
+     * Gen/kill summary of a block.
+     */
+    private record Summary<E>(SetFact<E> gen, SetFact<E> kill) {
+    }
+
+    /**
+     * @return gen/kill summaries of given blocks, or null if the
+     * analysis is not a {@link GenKillAnalysis}.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Summary<?>> summarize(List<List<Node>> blocks, boolean forward) {
+        if (!(analysis instanceof GenKillAnalysis<?, ?>)) {
+            return null;
+        }
+        GenKillAnalysis<Node, Object> genKill = (GenKillAnalysis<Node, Object>) analysis;
+        List<Summary<?>> summaries = new ArrayList<>(blocks.size());
+        for (List<Node> block : blocks) {
+            SetFact<Object> gen = null;
+            SetFact<Object> kill = null;
+            for (int i = 0; i < block.size(); ++i) {
+                Node node = block.get(forward ? i : block.size() - 1 - i);
+                if (gen == null) {
+                    gen = genKill.getGen(node);
+                    kill = genKill.getKill(node);
+                } else {
+                    // gen = gen(node) U (gen - kill(node)), kill = kill U kill(node)
+                    SetFact<Object> nodeKill = genKill.getKill(node);
+                    gen.removeAll(nodeKill);
+                    gen.union(genKill.getGen(node));
+                    kill.union(nodeKill);
+                }
+            }
+            summaries.add(new Summary<>(gen, kill));
+        }
+        return summaries;
+    }
+
+    /**
+     * Computes output = gen U (input - kill) of a block.
+     *
+     * @return true if the output fact of the block has been changed.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean applySummary(Summary<?> summary, Fact in, Fact out, boolean forward) {
+        Summary<Object> s = (Summary<Object>) summary;
+        SetFact<Object> input = (SetFact<Object>) (forward ? in : out);
+        SetFact<Object> output = (SetFact<Object>) (forward ? out : in);
+        SetFact<Object> newOutput = input.copy();
+        newOutput.removeAll(s.kill());
+        newOutput.union(s.gen());
+        boolean changed = !output.equals(newOutput);
+        if (changed) {
+            output.set(newOutput);
+        }
+        if (SolverMetrics.isEnabled()) {
+            SolverMetrics.recordTransfer(changed, output);
+        }
+        return changed;
+    }
+}
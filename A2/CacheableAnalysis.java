@@ -0,0 +1,50 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis;
+
+import pascal.taie.ir.IR;
+import pascal.taie.ir.stmt.Stmt;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Data-flow analysis on statements whose facts can be stored in
+ * {@link pascal.taie.analysis.dataflow.solver.ResultCache}, so that
+ * unchanged methods are not solved again in later runs.
+ * Variables are encoded by {@link pascal.taie.ir.exp.Var#getIndex()}.
+ *
+ * @param <Fact> type of data-flow facts
+ */
+public interface CacheableAnalysis<Fact> extends DataflowAnalysis<Stmt, Fact> {
+
+    void writeFact(Fact fact, DataOutput out) throws IOException;
+
+    /**
+     * Reads a fact written by {@link #writeFact}.
+     *
+     * @param ir IR of the method which the fact belongs to
+     */
+    Fact readFact(IR ir, ByteBuffer in);
+}
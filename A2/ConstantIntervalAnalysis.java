@@ -0,0 +1,71 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis.constprop;
+
+import pascal.taie.analysis.MethodAnalysis;
+import pascal.taie.analysis.dataflow.analysis.ProductAnalysis;
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.graph.cfg.CFGBuilder;
+import pascal.taie.config.AnalysisConfig;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.stmt.Stmt;
+
+import java.util.List;
+
+/**
+ * Runs {@link ConstantPropagation} and {@link IntervalAnalysis} on
+ * a method in one solver pass over the product of their lattices,
+ * see {@link ProductAnalysis}.
+ * <p>
+ * The result of each analysis is also stored in the IR under the ID of
+ * that analysis, like a result of the analysis run alone, so that its
+ * clients, e.g., dead code detection, find it there. Option "fact"
+ * is passed to {@link ConstantPropagation}.
+ */
+public class ConstantIntervalAnalysis extends MethodAnalysis {
+
+    public static final String ID = "constprop-interval";
+
+    private final ProductAnalysis<Stmt> product;
+
+    public ConstantIntervalAnalysis(AnalysisConfig config) {
+        super(config);
+        Object fact = getOptions().get("fact");
+        product = new ProductAnalysis<>(List.of(
+                new ConstantPropagation(new AnalysisConfig(ConstantPropagation.ID,
+                        "fact", fact != null ? fact : "array")),
+                new IntervalAnalysis(new AnalysisConfig(IntervalAnalysis.ID))));
+    }
+
+    /**
+     * @return the results of constant propagation and interval analysis,
+     * in this order.
+     */
+    @Override
+    public List<DataflowResult<Stmt, ?>> analyze(IR ir) {
+        List<DataflowResult<Stmt, ?>> results = product.solve(ir.getResult(CFGBuilder.ID));
+        ir.storeResult(ConstantPropagation.ID, results.get(0));
+        ir.storeResult(IntervalAnalysis.ID, results.get(1));
+        return results;
+    }
+}
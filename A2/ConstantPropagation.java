@@ -25,6 +25,10 @@ package pascal.taie.analysis.dataflow.analysis.constprop;
 import pascal.taie.Assignment;
 import pascal.taie.analysis.Analysis;
 import pascal.taie.analysis.dataflow.analysis.AbstractDataflowAnalysis;
+import pascal.taie.analysis.dataflow.analysis.CacheableAnalysis;
+import pascal.taie.analysis.dataflow.analysis.DeltaDataflowAnalysis;
+import pascal.taie.analysis.dataflow.analysis.SaturatingAnalysis;
+import pascal.taie.analysis.dataflow.fact.BitVarSetFact;
 import pascal.taie.analysis.graph.cfg.CFG;
 import pascal.taie.config.AnalysisConfig;
 import pascal.taie.ir.IR;
@@ -35,17 +39,31 @@ import pascal.taie.language.type.PrimitiveType;
 import pascal.taie.language.type.Type;
 import pascal.taie.util.AnalysisException;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 public class ConstantPropagation extends
-        AbstractDataflowAnalysis<Stmt, CPFact> {
+        AbstractDataflowAnalysis<Stmt, CPFact>
+        implements DeltaDataflowAnalysis<Stmt, CPFact>,
+        SaturatingAnalysis<Stmt, CPFact>, CacheableAnalysis<CPFact> {
 
     public static final String ID = "constprop";
 
+    /**
+     * Representation of facts, chosen by option "fact":
+     * "array" (default) for {@link ArrayCPFact},
+     * "persistent" for {@link PersistentCPFact},
+     * and "map" for plain {@link CPFact}.
+     */
+    private final String factKind;
+
     public ConstantPropagation(AnalysisConfig config) {
         super(config);
+        Object fact = getOptions().get("fact");
+        factKind = fact != null ? fact.toString() : "array";
     }
 
     @Override
@@ -55,10 +73,9 @@ public class ConstantPropagation extends
 
     @Override
     public CPFact newBoundaryFact(CFG<Stmt> cfg) {
-        // TODO - finish me
         // Because we do not support inter-procedure analysis, so
         // we can only assume that parameter is NAC.
-        CPFact boundaryFact = new CPFact();
+        CPFact boundaryFact = newFact();
         List<Var> params = cfg.getMethod().getIR().getParams();
         for (Var var : params) {
             if (canHoldInt(var)) {
@@ -70,70 +87,178 @@ public class ConstantPropagation extends
 
     @Override
     public CPFact newInitialFact() {
-        // TODO - finish me
-        return new CPFact();
+        return newFact();
+    }
+
+    @Override
+    public CPFact newSaturatedFact(CFG<Stmt> cfg) {
+        CPFact saturatedFact = newFact();
+        for (Var var : cfg.getMethod().getIR().getVars()) {
+            if (canHoldInt(var)) {
+                saturatedFact.update(var, Value.getNAC());
+            }
+        }
+        return saturatedFact;
+    }
+
+    @Override
+    public void writeFact(CPFact fact, DataOutput out) throws IOException {
+        out.writeInt(fact.keySet().size());
+        for (Var var : fact.keySet()) {
+            out.writeInt(var.getIndex());
+            out.writeLong(EncodedValues.encode(fact.get(var)));
+        }
+    }
+
+    @Override
+    public CPFact readFact(IR ir, ByteBuffer in) {
+        CPFact fact = newFact();
+        List<Var> vars = ir.getVars();
+        for (int n = in.getInt(); n > 0; --n) {
+            fact.update(vars.get(in.getInt()), EncodedValues.decode(in.getLong()));
+        }
+        return fact;
+    }
+
+    private CPFact newFact() {
+        return switch (factKind) {
+            case "array" -> new ArrayCPFact();
+            case "persistent" -> new PersistentCPFact();
+            case "map" -> new CPFact();
+            default -> throw new AnalysisException(
+                    "Unknown fact representation: " + factKind);
+        };
     }
 
     @Override
     public void meetInto(CPFact fact, CPFact target) {
-        // TODO - finish me
-        for (Map.Entry<Var, Value> entry: fact.entries().toList()) {
+        if (fact instanceof ArrayCPFact arrayFact
+                && target instanceof ArrayCPFact arrayTarget) {
+            arrayTarget.meet(arrayFact);
+            return;
+        }
+        if (fact instanceof PersistentCPFact persistentFact
+                && target instanceof PersistentCPFact persistentTarget) {
+            persistentTarget.meet(persistentFact);
+            return;
+        }
+        fact.entries().forEach(entry -> {
             Var var = entry.getKey();
-            Value value = entry.getValue();
-            Value targetValue = target.get(var);
-            target.update(var, meetValue(value, targetValue));
+            target.update(var, meetValue(entry.getValue(), target.get(var)));
+        });
+    }
+
+    @Override
+    public boolean meetDeltaInto(CPFact fact, BitVarSetFact delta,
+                                 CPFact target, BitVarSetFact changed) {
+        boolean isChanged = false;
+        for (Var var : delta != null ? delta.elements() : fact.keySet()) {
+            long code = EncodedValues.meet(getCode(fact, var), getCode(target, var));
+            if (updateCode(target, var, code)) {
+                changed.add(var);
+                isChanged = true;
+            }
         }
+        return isChanged;
     }
 
     /**
      * Meets two Values.
      */
     public Value meetValue(Value v1, Value v2) {
-        // TODO - finish me
-        // NAC meet v
-        if (v1.isNAC() || v2.isNAC()) {
-            return Value.getNAC();
-        }
-        // v meet c
-        if (v1.isConstant() && v2.isConstant()) {
-            // v meet c || c meet c
-            if (!v1.equals(v2)) {
-                return Value.getNAC();
-            } else {
-                return Value.makeConstant(v1.getConstant());
-            }
-        }
-        // UNDEF meet v
-        if (v1.isConstant() && v2.isUndef()) {
-            return Value.makeConstant(v1.getConstant());
-        }
-        if (v1.isUndef() && v2.isConstant()) {
-            return Value.makeConstant(v2.getConstant());
-        }
-        if (v1.isUndef() && v2.isUndef()) {
-            return Value.getUndef();
-        }
-        // Other
-        return Value.getNAC();
+        return EncodedValues.decode(EncodedValues.meet(
+                EncodedValues.encode(v1), EncodedValues.encode(v2)));
     }
 
     @Override
     public boolean transferNode(Stmt stmt, CPFact in, CPFact out) {
-        // TODO - finish me
-        boolean change = false;
-        CPFact newOut = in.copy();
+        Var def = null;
+        long evaluated = EncodedValues.UNDEF;
         if (stmt instanceof DefinitionStmt<?,?> defStmt) {
             LValue lvalue = defStmt.getLValue();
             RValue rvalue = defStmt.getRValue();
             if (lvalue instanceof Var var) {
                 if (canHoldInt(var)) {
-                    Value evaluated = evaluate(rvalue, in);
-                    newOut.update(var, evaluated);
+                    def = var;
+                    evaluated = evaluateCode(rvalue, in);
                 }
             }
         }
-        change = out.copyFrom(newOut);
-        return change;
+        if (in instanceof ArrayCPFact arrayIn
+                && out instanceof ArrayCPFact arrayOut) {
+            // OUT = (IN - def) + (def -> evaluated), without copying IN
+            boolean changed = arrayOut.copyFromExcept(arrayIn, def);
+            if (def != null && evaluated != EncodedValues.UNDEF) {
+                changed |= arrayOut.updateCode(def, evaluated);
+            }
+            return changed;
+        }
+        if (in instanceof PersistentCPFact persistentIn
+                && out instanceof PersistentCPFact persistentOut) {
+            // shares the structure of IN except the path to def
+            boolean changed = persistentOut.copyFromExcept(persistentIn, def);
+            if (def != null && evaluated != EncodedValues.UNDEF) {
+                changed |= persistentOut.updateCode(def, evaluated);
+            }
+            return changed;
+        }
+        CPFact newOut = in.copy();
+        if (def != null) {
+            newOut.update(def, EncodedValues.decode(evaluated));
+        }
+        return out.copyFrom(newOut);
+    }
+
+    @Override
+    public boolean transferNodeDelta(Stmt stmt, CPFact in, CPFact out,
+                                     BitVarSetFact delta, BitVarSetFact changed) {
+        Var def = null;
+        boolean isChanged = false;
+        if (stmt instanceof DefinitionStmt<?,?> defStmt
+                && defStmt.getLValue() instanceof Var var
+                && canHoldInt(var)) {
+            def = var;
+            // re-evaluates the definition only if some of its uses changed
+            for (RValue use : stmt.getUses()) {
+                if (use instanceof Var useVar && delta.contains(useVar)) {
+                    long evaluated = evaluateCode(defStmt.getRValue(), in);
+                    if (evaluated != EncodedValues.UNDEF
+                            && updateCode(out, def, evaluated)) {
+                        changed.add(def);
+                        isChanged = true;
+                    }
+                    break;
+                }
+            }
+        }
+        // other variables in delta flow from IN to OUT unchanged
+        for (Var var : delta.elements()) {
+            if (!var.equals(def) && updateCode(out, var, getCode(in, var))) {
+                changed.add(var);
+                isChanged = true;
+            }
+        }
+        return isChanged;
+    }
+
+    private static long getCode(CPFact fact, Var var) {
+        if (fact instanceof ArrayCPFact arrayFact) {
+            return arrayFact.getCode(var);
+        }
+        if (fact instanceof PersistentCPFact persistentFact) {
+            return persistentFact.getCode(var);
+        }
+        return EncodedValues.encode(fact.get(var));
+    }
+
+    private static boolean updateCode(CPFact fact, Var var, long code) {
+        if (fact instanceof ArrayCPFact arrayFact) {
+            return arrayFact.updateCode(var, code);
+        }
+        if (fact instanceof PersistentCPFact persistentFact) {
+            return persistentFact.updateCode(var, code);
+        }
+        return fact.update(var, EncodedValues.decode(code));
     }
 
     /**
@@ -162,84 +287,81 @@ public class ConstantPropagation extends
      * @return the resulting {@link Value}
      */
     public static Value evaluate(Exp exp, CPFact in) {
-        // TODO - finish me
-        if (exp instanceof Var) {
-            return in.get((Var) exp);
+        return EncodedValues.decode(evaluateCode(exp, in));
+    }
+
+    /**
+     * Evaluates given expression on encoded values (see {@link EncodedValues}),
+     * which does not allocate {@link Value}s for intermediate results.
+     *
+     * @return the encoded value of the expression
+     */
+    static long evaluateCode(Exp exp, CPFact in) {
+        if (exp instanceof Var var) {
+            return getCode(in, var);
         }
-        if (exp instanceof IntLiteral) {
-            return Value.makeConstant(((IntLiteral) exp).getValue());
+        if (exp instanceof IntLiteral intLiteral) {
+            return EncodedValues.makeConstant(intLiteral.getValue());
         }
-        if (exp instanceof BinaryExp) {
+        if (exp instanceof BinaryExp binaryExp) {
+            long leftVal = evaluateCode(binaryExp.getOperand1(), in);
+            long rightVal = evaluateCode(binaryExp.getOperand2(), in);
             if (exp instanceof ArithmeticExp arithmeticExp) {
-                Value leftVal = evaluate(arithmeticExp.getOperand1(), in);
-                Value rightVal = evaluate(arithmeticExp.getOperand2(), in);
-                if (rightVal.isConstant() && rightVal.getConstant() == 0 &&
-                        (arithmeticExp.getOperator() == ArithmeticExp.Op.DIV || arithmeticExp.getOperator() == ArithmeticExp.Op.REM)) {
-                    return Value.getUndef();
+                ArithmeticExp.Op op = arithmeticExp.getOperator();
+                if (EncodedValues.isConstant(rightVal)
+                        && EncodedValues.getConstant(rightVal) == 0
+                        && (op == ArithmeticExp.Op.DIV || op == ArithmeticExp.Op.REM)) {
+                    return EncodedValues.UNDEF;
                 }
-                if (leftVal.isConstant() && rightVal.isConstant()) {
-                    int left = leftVal.getConstant();
-                    int right = rightVal.getConstant();
+            }
+            if (EncodedValues.isConstant(leftVal) && EncodedValues.isConstant(rightVal)) {
+                int left = EncodedValues.getConstant(leftVal);
+                int right = EncodedValues.getConstant(rightVal);
+                if (exp instanceof ArithmeticExp arithmeticExp) {
                     return switch (arithmeticExp.getOperator()) {
-                        case ADD -> Value.makeConstant(left + right);
-                        case SUB -> Value.makeConstant(left - right);
-                        case MUL -> Value.makeConstant(left * right);
-                        case DIV -> Value.makeConstant(left / right);
-                        case REM -> Value.makeConstant(left % right);
-                        default -> Value.getUndef();
+                        case ADD -> EncodedValues.makeConstant(left + right);
+                        case SUB -> EncodedValues.makeConstant(left - right);
+                        case MUL -> EncodedValues.makeConstant(left * right);
+                        case DIV -> EncodedValues.makeConstant(left / right);
+                        case REM -> EncodedValues.makeConstant(left % right);
+                        default -> EncodedValues.UNDEF;
                     };
                 }
-                return leftVal.isNAC() || rightVal.isNAC() ? Value.getNAC() : Value.getUndef();
-            }
-            if (exp instanceof ConditionExp conditionExp) {
-                Value leftVal = evaluate(conditionExp.getOperand1(), in);
-                Value rightVal = evaluate(conditionExp.getOperand2(), in);
-                if (leftVal.isConstant() && rightVal.isConstant()) {
-                    int left = leftVal.getConstant();
-                    int right = rightVal.getConstant();
+                if (exp instanceof ConditionExp conditionExp) {
                     return switch (conditionExp.getOperator()) {
-                        case EQ -> Value.makeConstant(left == right ? 1 : 0);
-                        case NE -> Value.makeConstant(left != right ? 1 : 0);
-                        case LT -> Value.makeConstant(left < right ? 1 : 0);
-                        case GT -> Value.makeConstant(left > right ? 1 : 0);
-                        case LE -> Value.makeConstant(left <= right ? 1 : 0);
-                        case GE -> Value.makeConstant(left >= right ? 1 : 0);
-                        default -> Value.getUndef();
+                        case EQ -> EncodedValues.makeConstant(left == right ? 1 : 0);
+                        case NE -> EncodedValues.makeConstant(left != right ? 1 : 0);
+                        case LT -> EncodedValues.makeConstant(left < right ? 1 : 0);
+                        case GT -> EncodedValues.makeConstant(left > right ? 1 : 0);
+                        case LE -> EncodedValues.makeConstant(left <= right ? 1 : 0);
+                        case GE -> EncodedValues.makeConstant(left >= right ? 1 : 0);
+                        default -> EncodedValues.UNDEF;
                     };
                 }
-                return leftVal.isNAC() || rightVal.isNAC() ? Value.getNAC() : Value.getUndef();
-            }
-            if (exp instanceof ShiftExp shiftExp) {
-                Value leftVal = evaluate(shiftExp.getOperand1(), in);
-                Value rightVal = evaluate(shiftExp.getOperand2(), in);
-                if (leftVal.isConstant() && rightVal.isConstant()) {
-                    int left = leftVal.getConstant();
-                    int right = rightVal.getConstant();
+                if (exp instanceof ShiftExp shiftExp) {
                     return switch (shiftExp.getOperator()) {
-                        case SHL -> Value.makeConstant(left << right);
-                        case SHR -> Value.makeConstant(left >> right);
-                        case USHR -> Value.makeConstant(left >>> right);
-                        default -> Value.getUndef();
+                        case SHL -> EncodedValues.makeConstant(left << right);
+                        case SHR -> EncodedValues.makeConstant(left >> right);
+                        case USHR -> EncodedValues.makeConstant(left >>> right);
+                        default -> EncodedValues.UNDEF;
                     };
                 }
-                return leftVal.isNAC() || rightVal.isNAC() ? Value.getNAC() : Value.getUndef();
-            }
-            if (exp instanceof BitwiseExp bitwiseExp) {
-                Value leftVal = evaluate(bitwiseExp.getOperand1(), in);
-                Value rightVal = evaluate(bitwiseExp.getOperand2(), in);
-                if (leftVal.isConstant() && rightVal.isConstant()) {
-                    int left = leftVal.getConstant();
-                    int right = rightVal.getConstant();
+                if (exp instanceof BitwiseExp bitwiseExp) {
                     return switch (bitwiseExp.getOperator()) {
-                        case AND -> Value.makeConstant(left & right);
-                        case OR -> Value.makeConstant(left | right);
-                        case XOR -> Value.makeConstant(left ^ right);
-                        default -> Value.getUndef();
+                        case AND -> EncodedValues.makeConstant(left & right);
+                        case OR -> EncodedValues.makeConstant(left | right);
+                        case XOR -> EncodedValues.makeConstant(left ^ right);
+                        default -> EncodedValues.UNDEF;
                     };
                 }
-                return leftVal.isNAC() || rightVal.isNAC() ? Value.getNAC() : Value.getUndef();
+                return EncodedValues.NAC;
+            }
+            if (exp instanceof ArithmeticExp || exp instanceof ConditionExp
+                    || exp instanceof ShiftExp || exp instanceof BitwiseExp) {
+                return leftVal == EncodedValues.NAC || rightVal == EncodedValues.NAC
+                        ? EncodedValues.NAC : EncodedValues.UNDEF;
             }
         }
-        return Value.getNAC();
+        return EncodedValues.NAC;
     }
 }
@@ -0,0 +1,65 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis;
+
+import pascal.taie.analysis.dataflow.fact.BitVarSetFact;
+import pascal.taie.ir.exp.Var;
+
+/**
+ * Data-flow analysis whose facts are indexed by variables, and whose
+ * transfer function can be re-applied on only the variables that changed
+ * since the node was last visited (semi-naive evaluation).
+ * <p>
+ * This is sound only if the analysis is monotone, so that a fact can
+ * only move down the lattice and unchanged variables keep their values.
+ * Sets of changed variables are {@link BitVarSetFact}s.
+ *
+ * @param <Node> type of CFG nodes
+ * @param <Fact> type of data-flow facts
+ */
+public interface DeltaDataflowAnalysis<Node, Fact>
+        extends DataflowAnalysis<Node, Fact> {
+
+    /**
+     * Meets the entries of the given variables in fact into target.
+     *
+     * @param delta   variables to be met, or null for all variables in fact
+     * @param changed receives the variables whose entries in target changed
+     * @return true if target has been changed.
+     */
+    boolean meetDeltaInto(Fact fact, BitVarSetFact delta,
+                          Fact target, BitVarSetFact changed);
+
+    /**
+     * Node transfer function for the variables whose entries in the input
+     * fact of the node (IN for forward analyses, OUT for backward ones)
+     * changed since the last transfer of the node.
+     *
+     * @param delta   variables changed in the input fact
+     * @param changed receives the variables whose entries in the output
+     *                fact changed
+     * @return true if the output fact has been changed.
+     */
+    boolean transferNodeDelta(Node node, Fact in, Fact out,
+                              BitVarSetFact delta, BitVarSetFact changed);
+}
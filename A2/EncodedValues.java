@@ -0,0 +1,87 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis.constprop;
+
+/**
+ * Encodes {@link Value}s as primitive longs, so that facts and
+ * evaluation can work on the lattice without allocating objects.
+ * <p>
+ * The higher 32 bits hold the kind of the value, and the lower 32 bits
+ * hold the constant (if any). UNDEF is encoded as 0, so a zero-filled
+ * array of codes is a fact in which every variable is UNDEF.
+ */
+final class EncodedValues {
+
+    static final long UNDEF = 0L;
+
+    static final long NAC = 2L << 32;
+
+    private static final long CONSTANT = 1L << 32;
+
+    private static final long CONSTANT_MASK = 0xFFFFFFFFL;
+
+    private EncodedValues() {
+    }
+
+    static long makeConstant(int constant) {
+        return CONSTANT | (constant & CONSTANT_MASK);
+    }
+
+    static boolean isConstant(long code) {
+        return (code & ~CONSTANT_MASK) == CONSTANT;
+    }
+
+    static int getConstant(long code) {
+        return (int) code;
+    }
+
+    /**
+     * Meets two encoded values.
+     */
+    static long meet(long v1, long v2) {
+        if (v1 == v2 || v2 == UNDEF) {
+            return v1;
+        }
+        if (v1 == UNDEF) {
+            return v2;
+        }
+        return NAC;
+    }
+
+    static long encode(Value value) {
+        if (value.isConstant()) {
+            return makeConstant(value.getConstant());
+        }
+        return value.isNAC() ? NAC : UNDEF;
+    }
+
+    static Value decode(long code) {
+        if (code == UNDEF) {
+            return Value.getUndef();
+        }
+        if (code == NAC) {
+            return Value.getNAC();
+        }
+        return Value.makeConstant(getConstant(code));
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis;
+
+import pascal.taie.analysis.dataflow.fact.SetFact;
+
+/**
+ * Data-flow analysis whose transfer function of every node has the form
+ * output = gen U (input - kill). Such transfer functions compose, so a
+ * straight-line sequence of nodes can be summarized by one gen/kill pair.
+ *
+ * @param <Node> type of CFG nodes
+ * @param <E>    type of elements of the set facts
+ */
+public interface GenKillAnalysis<Node, E>
+        extends DataflowAnalysis<Node, SetFact<E>> {
+
+    /**
+     * @return the elements generated by given node.
+     */
+    SetFact<E> getGen(Node node);
+
+    /**
+     * @return the elements killed by given node.
+     */
+    SetFact<E> getKill(Node node);
+}
@@ -0,0 +1,152 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.solver;
+
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.graph.cfg.CFG;
+import pascal.taie.ir.stmt.Stmt;
+
+/**
+ * Data-flow result for CFGs of statements, which stores the facts in
+ * arrays indexed by {@link Stmt#getIndex()} instead of hash maps.
+ * The entry and exit nodes, which are not statements of the IR,
+ * have their own slots. Facts of nodes outside the CFG are stored
+ * in the maps of {@link DataflowResult}.
+ */
+class IndexedDataflowResult<Node, Fact> extends DataflowResult<Node, Fact> {
+
+    private static final int ENTRY = 0;
+
+    private static final int EXIT = 1;
+
+    private final Node entry;
+
+    private final Node exit;
+
+    /**
+     * Statements of the CFG, indexed by {@link Stmt#getIndex()}.
+     */
+    private final Object[] nodes;
+
+    private final Object[] inFacts;
+
+    private final Object[] outFacts;
+
+    /**
+     * Facts of the entry and the exit, in parallel with the arrays above.
+     */
+    private final Object[] boundaryInFacts = new Object[2];
+
+    private final Object[] boundaryOutFacts = new Object[2];
+
+    IndexedDataflowResult(CFG<Node> cfg) {
+        entry = cfg.getEntry();
+        exit = cfg.getExit();
+        int size = 0;
+        for (Node node : cfg.getNodes()) {
+            if (node != entry && node != exit) {
+                size = Math.max(size, ((Stmt) node).getIndex() + 1);
+            }
+        }
+        nodes = new Object[size];
+        for (Node node : cfg.getNodes()) {
+            if (node != entry && node != exit) {
+                nodes[((Stmt) node).getIndex()] = node;
+            }
+        }
+        inFacts = new Object[size];
+        outFacts = new Object[size];
+    }
+
+    /**
+     * @return index of given node in {@link #nodes},
+     * or -1 if it is not a statement of the CFG.
+     */
+    private int indexOf(Node node) {
+        if (node instanceof Stmt stmt) {
+            int index = stmt.getIndex();
+            if (index >= 0 && index < nodes.length && nodes[index] == node) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Fact getInFact(Node node) {
+        if (node == entry) {
+            return (Fact) boundaryInFacts[ENTRY];
+        }
+        if (node == exit) {
+            return (Fact) boundaryInFacts[EXIT];
+        }
+        int index = indexOf(node);
+        return index >= 0 ? (Fact) inFacts[index] : super.getInFact(node);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Fact getOutFact(Node node) {
+        if (node == entry) {
+            return (Fact) boundaryOutFacts[ENTRY];
+        }
+        if (node == exit) {
+            return (Fact) boundaryOutFacts[EXIT];
+        }
+        int index = indexOf(node);
+        return index >= 0 ? (Fact) outFacts[index] : super.getOutFact(node);
+    }
+
+    @Override
+    public void setInFact(Node node, Fact fact) {
+        if (node == entry) {
+            boundaryInFacts[ENTRY] = fact;
+        } else if (node == exit) {
+            boundaryInFacts[EXIT] = fact;
+        } else {
+            int index = indexOf(node);
+            if (index >= 0) {
+                inFacts[index] = fact;
+            } else {
+                super.setInFact(node, fact);
+            }
+        }
+    }
+
+    @Override
+    public void setOutFact(Node node, Fact fact) {
+        if (node == entry) {
+            boundaryOutFacts[ENTRY] = fact;
+        } else if (node == exit) {
+            boundaryOutFacts[EXIT] = fact;
+        } else {
+            int index = indexOf(node);
+            if (index >= 0) {
+                outFacts[index] = fact;
+            } else {
+                super.setOutFact(node, fact);
+            }
+        }
+    }
+}
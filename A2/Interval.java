@@ -0,0 +1,152 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis.constprop;
+
+/**
+ * Range of int values, from {@link #getLower()} to {@link #getUpper()}
+ * inclusively, or the empty range for variables which are not defined yet,
+ * like {@link Value#getUndef()} of constant propagation.
+ */
+public final class Interval {
+
+    private static final Interval EMPTY = new Interval(1, 0);
+
+    private static final Interval TOP =
+            new Interval(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    private final int lower;
+
+    private final int upper;
+
+    private Interval(int lower, int upper) {
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    public static Interval getEmpty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return the range of all int values.
+     */
+    public static Interval getTop() {
+        return TOP;
+    }
+
+    public static Interval makeConstant(int constant) {
+        return new Interval(constant, constant);
+    }
+
+    /**
+     * @return the range of given bounds, or {@link #getTop()} if any
+     * bound is out of int, as the computation may overflow.
+     */
+    static Interval of(long lower, long upper) {
+        if (lower < Integer.MIN_VALUE || upper > Integer.MAX_VALUE) {
+            return TOP;
+        }
+        return new Interval((int) lower, (int) upper);
+    }
+
+    public boolean isEmpty() {
+        return lower > upper;
+    }
+
+    public boolean isTop() {
+        return lower == Integer.MIN_VALUE && upper == Integer.MAX_VALUE;
+    }
+
+    public boolean isConstant() {
+        return lower == upper;
+    }
+
+    public int getLower() {
+        return lower;
+    }
+
+    public int getUpper() {
+        return upper;
+    }
+
+    /**
+     * @return the smallest range which contains this range and given one.
+     */
+    public Interval join(Interval other) {
+        if (isEmpty()) {
+            return other;
+        }
+        if (other.isEmpty() || (lower <= other.lower && other.upper <= upper)) {
+            return this;
+        }
+        return new Interval(Math.min(lower, other.lower), Math.max(upper, other.upper));
+    }
+
+    /**
+     * Widens this range with a newer one: the bounds which have grown
+     * are moved to the limits of int, so that a loop converges in at
+     * most two widenings of each variable.
+     */
+    public Interval widen(Interval newer) {
+        if (isEmpty()) {
+            return newer;
+        }
+        if (newer.isEmpty()) {
+            return this;
+        }
+        return new Interval(newer.lower < lower ? Integer.MIN_VALUE : lower,
+                newer.upper > upper ? Integer.MAX_VALUE : upper);
+    }
+
+    /**
+     * Narrows this widened range with a newer one: only the bounds which
+     * have been widened to the limits of int are taken from the newer one.
+     */
+    public Interval narrow(Interval newer) {
+        if (isEmpty() || newer.isEmpty()) {
+            return newer;
+        }
+        return new Interval(lower == Integer.MIN_VALUE ? newer.lower : lower,
+                upper == Integer.MAX_VALUE ? newer.upper : upper);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Interval that
+                && (isEmpty() ? that.isEmpty() : lower == that.lower && upper == that.upper);
+    }
+
+    @Override
+    public int hashCode() {
+        return isEmpty() ? 0 : 31 * lower + upper;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "EMPTY";
+        }
+        return "[" + (lower == Integer.MIN_VALUE ? "-inf" : lower) + ", "
+                + (upper == Integer.MAX_VALUE ? "+inf" : upper) + "]";
+    }
+}
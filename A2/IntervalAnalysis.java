@@ -0,0 +1,231 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis.constprop;
+
+import pascal.taie.analysis.dataflow.analysis.AbstractDataflowAnalysis;
+import pascal.taie.analysis.dataflow.analysis.WideningAnalysis;
+import pascal.taie.analysis.graph.cfg.CFG;
+import pascal.taie.config.AnalysisConfig;
+import pascal.taie.ir.exp.ArithmeticExp;
+import pascal.taie.ir.exp.BinaryExp;
+import pascal.taie.ir.exp.BitwiseExp;
+import pascal.taie.ir.exp.ConditionExp;
+import pascal.taie.ir.exp.Exp;
+import pascal.taie.ir.exp.IntLiteral;
+import pascal.taie.ir.exp.LValue;
+import pascal.taie.ir.exp.ShiftExp;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.DefinitionStmt;
+import pascal.taie.ir.stmt.Stmt;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation.canHoldInt;
+
+/**
+ * Computes the ranges of int variables, see {@link Interval}.
+ * <p>
+ * Unlike constants, ranges can grow many times around a loop, so this
+ * analysis is a {@link WideningAnalysis}: the ranges at loop heads are
+ * widened to the limits of int, and then narrowed again. Thus it needs
+ * a solver which supports widening, i.e., "worklist" or "wto".
+ */
+public class IntervalAnalysis extends
+        AbstractDataflowAnalysis<Stmt, IntervalFact>
+        implements WideningAnalysis<Stmt, IntervalFact> {
+
+    public static final String ID = "interval";
+
+    public IntervalAnalysis(AnalysisConfig config) {
+        super(config);
+    }
+
+    @Override
+    public boolean isForward() {
+        return true;
+    }
+
+    @Override
+    public IntervalFact newBoundaryFact(CFG<Stmt> cfg) {
+        // parameters may hold any value, as for constant propagation
+        IntervalFact boundaryFact = new IntervalFact();
+        for (Var var : cfg.getMethod().getIR().getParams()) {
+            if (canHoldInt(var)) {
+                boundaryFact.update(var, Interval.getTop());
+            }
+        }
+        return boundaryFact;
+    }
+
+    @Override
+    public IntervalFact newInitialFact() {
+        return new IntervalFact();
+    }
+
+    @Override
+    public void meetInto(IntervalFact fact, IntervalFact target) {
+        fact.entries().forEach(entry -> {
+            Var var = entry.getKey();
+            target.update(var, entry.getValue().join(target.get(var)));
+        });
+    }
+
+    @Override
+    public boolean transferNode(Stmt stmt, IntervalFact in, IntervalFact out) {
+        IntervalFact newOut = in.copy();
+        if (stmt instanceof DefinitionStmt<?, ?> defStmt) {
+            LValue lvalue = defStmt.getLValue();
+            if (lvalue instanceof Var var && canHoldInt(var)) {
+                newOut.update(var, evaluate(defStmt.getRValue(), in));
+            }
+        }
+        return out.copyFrom(newOut);
+    }
+
+    @Override
+    public IntervalFact widen(IntervalFact oldFact, IntervalFact newFact) {
+        IntervalFact widened = new IntervalFact();
+        for (Var var : union(oldFact, newFact)) {
+            widened.update(var, oldFact.get(var).widen(newFact.get(var)));
+        }
+        return widened;
+    }
+
+    @Override
+    public IntervalFact narrow(IntervalFact oldFact, IntervalFact newFact) {
+        IntervalFact narrowed = new IntervalFact();
+        for (Var var : union(oldFact, newFact)) {
+            narrowed.update(var, oldFact.get(var).narrow(newFact.get(var)));
+        }
+        return narrowed;
+    }
+
+    private static Set<Var> union(IntervalFact fact1, IntervalFact fact2) {
+        Set<Var> vars = new HashSet<>(fact1.keySet());
+        vars.addAll(fact2.keySet());
+        return vars;
+    }
+
+    /**
+     * Evaluates the range of given expression. Like constant propagation,
+     * an operation on an empty range results in an empty range, unless
+     * the other operand may hold any value.
+     *
+     * @param exp the expression to be evaluated
+     * @param in  IN fact of the statement
+     * @return the resulting {@link Interval}
+     */
+    public static Interval evaluate(Exp exp, IntervalFact in) {
+        if (exp instanceof Var var) {
+            return in.get(var);
+        }
+        if (exp instanceof IntLiteral intLiteral) {
+            return Interval.makeConstant(intLiteral.getValue());
+        }
+        if (exp instanceof BinaryExp binaryExp) {
+            Interval left = evaluate(binaryExp.getOperand1(), in);
+            Interval right = evaluate(binaryExp.getOperand2(), in);
+            if (left.isEmpty() || right.isEmpty()) {
+                if (exp instanceof ArithmeticExp || exp instanceof ConditionExp
+                        || exp instanceof ShiftExp || exp instanceof BitwiseExp) {
+                    return left.isTop() || right.isTop()
+                            ? Interval.getTop() : Interval.getEmpty();
+                }
+                return Interval.getTop();
+            }
+            if (exp instanceof ArithmeticExp arithmeticExp) {
+                return evaluateArithmetic(arithmeticExp.getOperator(), left, right);
+            }
+            if (exp instanceof ConditionExp conditionExp) {
+                return evaluateCondition(conditionExp.getOperator(), left, right);
+            }
+        }
+        return Interval.getTop();
+    }
+
+    /**
+     * Evaluates an arithmetic operation on non-empty ranges. The bounds are
+     * computed on longs, and a result which may overflow int is the top.
+     */
+    private static Interval evaluateArithmetic(ArithmeticExp.Op op,
+                                               Interval left, Interval right) {
+        long l1 = left.getLower(), u1 = left.getUpper();
+        long l2 = right.getLower(), u2 = right.getUpper();
+        return switch (op) {
+            case ADD -> Interval.of(l1 + l2, u1 + u2);
+            case SUB -> Interval.of(l1 - u2, u1 - l2);
+            case MUL -> {
+                long p1 = l1 * l2, p2 = l1 * u2, p3 = u1 * l2, p4 = u1 * u2;
+                yield Interval.of(Math.min(Math.min(p1, p2), Math.min(p3, p4)),
+                        Math.max(Math.max(p1, p2), Math.max(p3, p4)));
+            }
+            default -> Interval.getTop();
+        };
+    }
+
+    /**
+     * Evaluates a comparison on non-empty ranges, which is a constant
+     * if it holds for all values in the ranges or for none of them.
+     */
+    private static Interval evaluateCondition(ConditionExp.Op op,
+                                              Interval left, Interval right) {
+        int l1 = left.getLower(), u1 = left.getUpper();
+        int l2 = right.getLower(), u2 = right.getUpper();
+        boolean always, never;
+        switch (op) {
+            case EQ -> {
+                always = left.isConstant() && left.equals(right);
+                never = u1 < l2 || u2 < l1;
+            }
+            case NE -> {
+                always = u1 < l2 || u2 < l1;
+                never = left.isConstant() && left.equals(right);
+            }
+            case LT -> {
+                always = u1 < l2;
+                never = l1 >= u2;
+            }
+            case GT -> {
+                always = l1 > u2;
+                never = u1 <= l2;
+            }
+            case LE -> {
+                always = u1 <= l2;
+                never = l1 > u2;
+            }
+            case GE -> {
+                always = l1 >= u2;
+                never = u1 < l2;
+            }
+            default -> {
+                always = false;
+                never = false;
+            }
+        }
+        if (always) {
+            return Interval.makeConstant(1);
+        }
+        return never ? Interval.makeConstant(0) : Interval.of(0, 1);
+    }
+}
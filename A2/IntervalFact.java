@@ -0,0 +1,70 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis.constprop;
+
+import pascal.taie.analysis.dataflow.fact.MapFact;
+import pascal.taie.ir.exp.Var;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Fact of {@link IntervalAnalysis}, which maps variables to their ranges.
+ * Like {@link CPFact}, variables with empty ranges are not stored.
+ */
+public class IntervalFact extends MapFact<Var, Interval> {
+
+    public IntervalFact() {
+        this(Collections.emptyMap());
+    }
+
+    private IntervalFact(Map<Var, Interval> map) {
+        super(map);
+    }
+
+    /**
+     * @return the range of given variable, which is empty
+     * if the variable is not in this fact.
+     */
+    @Override
+    public Interval get(Var key) {
+        return map.getOrDefault(key, Interval.getEmpty());
+    }
+
+    /**
+     * Updates the range of given variable, and removes the variable
+     * if the range is empty.
+     */
+    @Override
+    public boolean update(Var key, Interval value) {
+        if (value.isEmpty()) {
+            return remove(key) != null;
+        }
+        return super.update(key, value);
+    }
+
+    @Override
+    public IntervalFact copy() {
+        return new IntervalFact(this.map);
+    }
+}
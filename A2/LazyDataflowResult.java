@@ -0,0 +1,171 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.solver;
+
+import pascal.taie.analysis.dataflow.analysis.DataflowAnalysis;
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.graph.cfg.CFG;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Data-flow result which keeps facts only at anchors, i.e., join points and
+ * loop heads, where a fact cannot be derived from a unique previous node.
+ * The facts of other nodes are recomputed on demand by replaying the
+ * transfer functions from the nearest anchor, and the recomputed facts of
+ * recently queried nodes are kept in a small LRU cache.
+ * <p>
+ * Here "input" denotes the IN fact for forward analyses and the OUT fact
+ * for backward ones, and "output" denotes the other one.
+ */
+class LazyDataflowResult<Node, Fact> extends DataflowResult<Node, Fact> {
+
+    private static final int CACHE_SIZE = 32;
+
+    private final DataflowAnalysis<Node, Fact> analysis;
+
+    private final CFG<Node> cfg;
+
+    private final boolean forward;
+
+    /**
+     * Recomputed output facts.
+     */
+    private final Map<Node, Fact> cache =
+            new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Node, Fact> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    /**
+     * Keeps the input facts of given anchors from a complete result.
+     */
+    LazyDataflowResult(DataflowAnalysis<Node, Fact> analysis, CFG<Node> cfg,
+                       DataflowResult<Node, Fact> result, Set<Node> anchors) {
+        this.analysis = analysis;
+        this.cfg = cfg;
+        this.forward = analysis.isForward();
+        for (Node anchor : anchors) {
+            if (forward) {
+                super.setInFact(anchor, result.getInFact(anchor));
+            } else {
+                super.setOutFact(anchor, result.getOutFact(anchor));
+            }
+        }
+        // the boundary fact is not the result of a transfer function
+        if (forward) {
+            super.setOutFact(cfg.getEntry(), result.getOutFact(cfg.getEntry()));
+        } else {
+            super.setInFact(cfg.getExit(), result.getInFact(cfg.getExit()));
+        }
+    }
+
+    @Override
+    public Fact getInFact(Node node) {
+        return forward ? getInput(node) : getOutput(node);
+    }
+
+    @Override
+    public Fact getOutFact(Node node) {
+        return forward ? getOutput(node) : getInput(node);
+    }
+
+    private Fact getInput(Node node) {
+        Fact input = getStoredInput(node);
+        if (input != null) {
+            return input;
+        }
+        return getOutput(getPrevious(node));
+    }
+
+    private Fact getOutput(Node node) {
+        Fact output = getKnownOutput(node);
+        if (output != null) {
+            return output;
+        }
+        // walks back to the nearest node whose input is known,
+        // then replays the transfer functions along the path
+        Deque<Node> path = new ArrayDeque<>();
+        Fact input;
+        Node current = node;
+        while (true) {
+            path.push(current);
+            input = getStoredInput(current);
+            if (input != null) {
+                break;
+            }
+            Node previous = getPrevious(current);
+            input = getKnownOutput(previous);
+            if (input != null) {
+                break;
+            }
+            current = previous;
+        }
+        while (!path.isEmpty()) {
+            Node next = path.pop();
+            output = transfer(next, input);
+            cache.put(next, output);
+            input = output;
+        }
+        return output;
+    }
+
+    private Fact getStoredInput(Node node) {
+        return forward ? super.getInFact(node) : super.getOutFact(node);
+    }
+
+    /**
+     * @return the stored boundary fact or the cached output fact
+     * of given node, or null if it needs to be recomputed.
+     */
+    private Fact getKnownOutput(Node node) {
+        if (forward ? cfg.isEntry(node) : cfg.isExit(node)) {
+            return forward ? super.getOutFact(node) : super.getInFact(node);
+        }
+        return cache.get(node);
+    }
+
+    /**
+     * @return the unique node that flows into given node, which is not
+     * an anchor. Its output fact is the input fact of given node.
+     */
+    private Node getPrevious(Node node) {
+        return Solver.nextsOf(cfg, node, !forward).iterator().next();
+    }
+
+    private Fact transfer(Node node, Fact input) {
+        Fact output = analysis.newInitialFact();
+        if (forward) {
+            analysis.transferNode(node, input, output);
+        } else {
+            analysis.transferNode(node, output, input);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis;
+
+import pascal.taie.analysis.dataflow.fact.BitVarSetFact;
+import pascal.taie.analysis.dataflow.fact.SetFact;
+import pascal.taie.analysis.graph.cfg.CFG;
+import pascal.taie.config.AnalysisConfig;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.LValue;
+import pascal.taie.ir.exp.RValue;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Stmt;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Implementation of classic live variable analysis.
+ * Facts are {@link BitVarSetFact}s, which are used as plain
+ * {@link SetFact}s by the solver and the clients of the result.
+ */
+public class LiveVariableAnalysis extends
+        AbstractDataflowAnalysis<Stmt, SetFact<Var>>
+        implements DeltaDataflowAnalysis<Stmt, SetFact<Var>>,
+        GenKillAnalysis<Stmt, Var>, SaturatingAnalysis<Stmt, SetFact<Var>>,
+        CacheableAnalysis<SetFact<Var>> {
+
+    public static final String ID = "livevar";
+
+    public LiveVariableAnalysis(AnalysisConfig config) {
+        super(config);
+    }
+
+    @Override
+    public boolean isForward() {
+        return false;
+    }
+
+    @Override
+    public SetFact<Var> newBoundaryFact(CFG<Stmt> cfg) {
+        return new BitVarSetFact();
+    }
+
+    @Override
+    public SetFact<Var> newInitialFact() {
+        return new BitVarSetFact();
+    }
+
+    @Override
+    public SetFact<Var> newSaturatedFact(CFG<Stmt> cfg) {
+        BitVarSetFact saturatedFact = new BitVarSetFact();
+        cfg.getMethod().getIR().getVars().forEach(saturatedFact::add);
+        return saturatedFact;
+    }
+
+    @Override
+    public void writeFact(SetFact<Var> fact, DataOutput out) throws IOException {
+        List<Var> vars = fact.stream().toList();
+        out.writeInt(vars.size());
+        for (Var var : vars) {
+            out.writeInt(var.getIndex());
+        }
+    }
+
+    @Override
+    public SetFact<Var> readFact(IR ir, ByteBuffer in) {
+        BitVarSetFact fact = new BitVarSetFact();
+        List<Var> vars = ir.getVars();
+        for (int n = in.getInt(); n > 0; --n) {
+            fact.add(vars.get(in.getInt()));
+        }
+        return fact;
+    }
+
+    @Override
+    public void meetInto(SetFact<Var> fact, SetFact<Var> target) {
+        target.union(fact);
+    }
+
+    @Override
+    public boolean transferNode(Stmt stmt, SetFact<Var> in, SetFact<Var> out) {
+        // IN = use U (OUT - def), computed in place on the words of IN;
+        // facts are BitVarSetFacts, see newInitialFact()
+        Var def = stmt.getDef().orElse(null) instanceof Var var ? var : null;
+        return ((BitVarSetFact) in).setToUnionMinus(
+                stmt.getUses(), (BitVarSetFact) out, def);
+    }
+
+    @Override
+    public boolean meetDeltaInto(SetFact<Var> fact, BitVarSetFact delta,
+                                 SetFact<Var> target, BitVarSetFact changed) {
+        if (delta == null) {
+            // facts are BitVarSetFacts, see newInitialFact()
+            delta = (BitVarSetFact) fact;
+        }
+        boolean isChanged = false;
+        for (Var var : delta.elements()) {
+            if (target.add(var)) {
+                changed.add(var);
+                isChanged = true;
+            }
+        }
+        return isChanged;
+    }
+
+    @Override
+    public boolean transferNodeDelta(Stmt stmt, SetFact<Var> in, SetFact<Var> out,
+                                     BitVarSetFact delta, BitVarSetFact changed) {
+        // uses are already in IN since the first transfer,
+        // so only the new live variables in OUT - def are added
+        Optional<LValue> def = stmt.getDef();
+        boolean isChanged = false;
+        for (Var var : delta.elements()) {
+            if (!(def.isPresent() && def.get().equals(var)) && in.add(var)) {
+                changed.add(var);
+                isChanged = true;
+            }
+        }
+        return isChanged;
+    }
+
+    @Override
+    public SetFact<Var> getGen(Stmt stmt) {
+        SetFact<Var> gen = new BitVarSetFact();
+        for (RValue use : stmt.getUses()) {
+            if (use instanceof Var var) {
+                gen.add(var);
+            }
+        }
+        return gen;
+    }
+
+    @Override
+    public SetFact<Var> getKill(Stmt stmt) {
+        SetFact<Var> kill = new BitVarSetFact();
+        Optional<LValue> def = stmt.getDef();
+        if (def.isPresent() && def.get() instanceof Var var) {
+            kill.add(var);
+        }
+        return kill;
+    }
+}
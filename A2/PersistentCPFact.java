@@ -0,0 +1,460 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis.constprop;
+
+import pascal.taie.analysis.dataflow.fact.MapFact;
+import pascal.taie.ir.exp.Var;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent {@link CPFact} whose content is an immutable bitmap trie
+ * (in the style of hash array mapped tries) keyed by {@link Var#getIndex()},
+ * with encoded values (see {@link EncodedValues}) at the leaves.
+ * <p>
+ * Copying a fact is O(1) as the copy shares the trie, and updating
+ * a variable copies only the path to it, which is O(log n). Meet and
+ * change detection skip subtries that are shared by both facts, so
+ * facts of neighbouring statements, which share most of their structure,
+ * are cheap to compare and to keep in a data-flow result.
+ * <p>
+ * The map inherited from {@link MapFact} is left empty, thus every
+ * method of {@link MapFact} is overridden on the trie.
+ * All variables in a fact must belong to the same method.
+ */
+public class PersistentCPFact extends CPFact {
+
+    private static final int BITS = 5;
+
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * Variables of the method, indexed by {@link Var#getIndex()}.
+     * It is resolved from the first variable updated in this fact
+     * and is shared among the copies of this fact.
+     */
+    private List<Var> vars;
+
+    /**
+     * Shift of the root level, which is large enough for
+     * all variables of the method.
+     */
+    private int shift;
+
+    /**
+     * Root of the trie, or null if all variables are UNDEF.
+     */
+    private Node root;
+
+    public PersistentCPFact() {
+    }
+
+    private PersistentCPFact(List<Var> vars, int shift, Node root) {
+        this.vars = vars;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    @Override
+    public Value get(Var key) {
+        return EncodedValues.decode(getCode(key));
+    }
+
+    /**
+     * @return the encoded value of given variable.
+     */
+    long getCode(Var key) {
+        int index = key.getIndex();
+        Node node = root;
+        if (node == null || (index >>> shift >>> BITS) != 0) {
+            return EncodedValues.UNDEF;
+        }
+        for (int s = shift; s > 0; s -= BITS) {
+            int bit = 1 << ((index >>> s) & MASK);
+            if (!node.has(bit)) {
+                return EncodedValues.UNDEF;
+            }
+            node = node.children[node.pos(bit)];
+        }
+        int bit = 1 << (index & MASK);
+        return node.has(bit) ? node.codes[node.pos(bit)] : EncodedValues.UNDEF;
+    }
+
+    @Override
+    public boolean update(Var key, Value value) {
+        return updateCode(key, EncodedValues.encode(value));
+    }
+
+    /**
+     * Updates the encoded value of given variable.
+     *
+     * @return true if the fact changed as a result of the call.
+     */
+    boolean updateCode(Var key, long code) {
+        if (vars == null) {
+            vars = key.getMethod().getIR().getVars();
+            while ((vars.size() - 1) >>> shift >>> BITS != 0) {
+                shift += BITS;
+            }
+        }
+        Node newRoot = put(root, shift, key.getIndex(), code);
+        if (newRoot != root) {
+            root = newRoot;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Value remove(Var key) {
+        long old = getCode(key);
+        if (old == EncodedValues.UNDEF) {
+            return null;
+        }
+        root = put(root, shift, key.getIndex(), EncodedValues.UNDEF);
+        return EncodedValues.decode(old);
+    }
+
+    /**
+     * Meets given fact into this fact.
+     *
+     * @return true if this fact changed as a result of the call.
+     */
+    boolean meet(PersistentCPFact fact) {
+        adoptShape(fact);
+        Node newRoot = combine(root, fact.root, shift, true);
+        if (newRoot != root) {
+            root = newRoot;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copies all non-UNDEF values of given fact into this fact.
+     */
+    @Override
+    public boolean copyFrom(MapFact<Var, Value> fact) {
+        if (fact instanceof PersistentCPFact persistentFact) {
+            return copyFromExcept(persistentFact, null);
+        }
+        // reads the entries of the other fact through its methods,
+        // which may be overridden as well
+        boolean changed = false;
+        for (Map.Entry<Var, Value> entry : fact.entries().toList()) {
+            changed |= update(entry.getKey(), entry.getValue());
+        }
+        return changed;
+    }
+
+    /**
+     * Copies all non-UNDEF values of given fact, except the value of
+     * {@code except} (which may be null), into this fact.
+     *
+     * @return true if this fact changed as a result of the call.
+     */
+    boolean copyFromExcept(PersistentCPFact fact, Var except) {
+        adoptShape(fact);
+        Node newRoot = combine(root, fact.root, shift, false);
+        if (except != null) {
+            // restore the value of except, which may rebuild
+            // the path to it, thus compare the content below
+            newRoot = put(newRoot, shift, except.getIndex(), getCode(except));
+        }
+        if (newRoot == root || equal(newRoot, root, shift)) {
+            return false;
+        }
+        root = newRoot;
+        return true;
+    }
+
+    private void adoptShape(PersistentCPFact fact) {
+        if (vars == null) {
+            vars = fact.vars;
+            shift = fact.shift;
+        }
+    }
+
+    @Override
+    public PersistentCPFact copy() {
+        return new PersistentCPFact(vars, shift, root);
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+    }
+
+    @Override
+    public Set<Var> keySet() {
+        return entries().map(Map.Entry::getKey)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    @Override
+    public Stream<Map.Entry<Var, Value>> entries() {
+        List<Map.Entry<Var, Value>> entries = new ArrayList<>();
+        collect(root, shift, 0, entries);
+        return entries.stream();
+    }
+
+    @Override
+    public Collection<Value> values() {
+        return entries().map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void forEach(BiConsumer<Var, Value> action) {
+        entries().forEach(entry -> action.accept(entry.getKey(), entry.getValue()));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null || entries().findAny().isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return (int) entries().count();
+    }
+
+    private void collect(Node node, int shift, int base,
+                         List<Map.Entry<Var, Value>> entries) {
+        if (node == null) {
+            return;
+        }
+        for (int bits = node.bitmap, i = 0; bits != 0; bits &= bits - 1, ++i) {
+            int index = base | (Integer.numberOfTrailingZeros(bits) << shift);
+            if (shift == 0) {
+                entries.add(Map.entry(vars.get(index),
+                        EncodedValues.decode(node.codes[i])));
+            } else {
+                collect(node.children[i], shift - BITS, index, entries);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof PersistentCPFact other) {
+            return equal(root, other.root, shift);
+        }
+        // like MapFact, facts of different classes are never equal,
+        // which keeps equals() symmetric with plain CPFacts
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return entries().mapToInt(Map.Entry::hashCode).sum();
+    }
+
+    @Override
+    public String toString() {
+        return entries().map(Object::toString)
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    /**
+     * Immutable node of the trie. Inner nodes hold children, and leaves
+     * (nodes at shift 0) hold encoded values. Both are compressed by
+     * the bitmap of occupied slots. A node is never empty.
+     */
+    private static final class Node {
+
+        private final int bitmap;
+
+        private final Node[] children;
+
+        private final long[] codes;
+
+        private Node(int bitmap, Node[] children, long[] codes) {
+            this.bitmap = bitmap;
+            this.children = children;
+            this.codes = codes;
+        }
+
+        private boolean has(int bit) {
+            return (bitmap & bit) != 0;
+        }
+
+        /**
+         * @return position of the slot of given bit in the compressed array.
+         */
+        private int pos(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    /**
+     * @return the trie with the value of given index set to code, or
+     * {@code node} itself if the value does not change.
+     */
+    private static Node put(Node node, int shift, int index, long code) {
+        int bit = 1 << ((index >>> shift) & MASK);
+        boolean present = node != null && node.has(bit);
+        int pos = node != null ? node.pos(bit) : 0;
+        if (shift == 0) {
+            if (present) {
+                if (node.codes[pos] == code) {
+                    return node;
+                }
+                if (code != EncodedValues.UNDEF) {
+                    long[] codes = node.codes.clone();
+                    codes[pos] = code;
+                    return new Node(node.bitmap, null, codes);
+                }
+            } else if (code == EncodedValues.UNDEF) {
+                return node;
+            } else {
+                return insert(node, bit, pos, null, code);
+            }
+        } else {
+            Node child = present ? node.children[pos] : null;
+            Node newChild = put(child, shift - BITS, index, code);
+            if (newChild == child) {
+                return node;
+            }
+            if (newChild != null && present) {
+                Node[] children = node.children.clone();
+                children[pos] = newChild;
+                return new Node(node.bitmap, children, null);
+            }
+            if (newChild != null) {
+                return insert(node, bit, pos, newChild, 0L);
+            }
+        }
+        // removes the slot
+        if (node.bitmap == bit) {
+            return null;
+        }
+        int bitmap = node.bitmap & ~bit;
+        if (shift == 0) {
+            long[] codes = new long[node.codes.length - 1];
+            System.arraycopy(node.codes, 0, codes, 0, pos);
+            System.arraycopy(node.codes, pos + 1, codes, pos, codes.length - pos);
+            return new Node(bitmap, null, codes);
+        } else {
+            Node[] children = new Node[node.children.length - 1];
+            System.arraycopy(node.children, 0, children, 0, pos);
+            System.arraycopy(node.children, pos + 1, children, pos, children.length - pos);
+            return new Node(bitmap, children, null);
+        }
+    }
+
+    /**
+     * @return a copy of node (which may be null) with a new slot
+     * holding either child (for inner nodes) or code (for leaves).
+     */
+    private static Node insert(Node node, int bit, int pos, Node child, long code) {
+        if (child != null) {
+            Node[] old = node != null ? node.children : new Node[0];
+            Node[] children = new Node[old.length + 1];
+            System.arraycopy(old, 0, children, 0, pos);
+            children[pos] = child;
+            System.arraycopy(old, pos, children, pos + 1, old.length - pos);
+            return new Node(node != null ? node.bitmap | bit : bit, children, null);
+        } else {
+            long[] old = node != null ? node.codes : new long[0];
+            long[] codes = new long[old.length + 1];
+            System.arraycopy(old, 0, codes, 0, pos);
+            codes[pos] = code;
+            System.arraycopy(old, pos, codes, pos + 1, old.length - pos);
+            return new Node(node != null ? node.bitmap | bit : bit, null, codes);
+        }
+    }
+
+    /**
+     * Combines two tries slot by slot, either by meeting the values
+     * ({@code meet} is true) or by overwriting the values of {@code a}
+     * with the values of {@code b}.
+     *
+     * @return the combined trie, which is {@code a} itself
+     * if its content does not change.
+     */
+    private static Node combine(Node a, Node b, int shift, boolean meet) {
+        if (a == b || b == null) {
+            return a;
+        }
+        if (a == null) {
+            return b;
+        }
+        int bitmap = a.bitmap | b.bitmap;
+        boolean same = bitmap == a.bitmap;
+        int size = Integer.bitCount(bitmap);
+        long[] codes = shift == 0 ? new long[size] : null;
+        Node[] children = shift == 0 ? null : new Node[size];
+        for (int bits = bitmap, i = 0; bits != 0; bits &= bits - 1, ++i) {
+            int bit = Integer.lowestOneBit(bits);
+            if (shift == 0) {
+                long ca = a.has(bit) ? a.codes[a.pos(bit)] : EncodedValues.UNDEF;
+                long cb = b.has(bit) ? b.codes[b.pos(bit)] : EncodedValues.UNDEF;
+                long code = meet ? EncodedValues.meet(ca, cb)
+                        : (cb != EncodedValues.UNDEF ? cb : ca);
+                codes[i] = code;
+                same &= code == ca;
+            } else {
+                Node ca = a.has(bit) ? a.children[a.pos(bit)] : null;
+                Node cb = b.has(bit) ? b.children[b.pos(bit)] : null;
+                Node child = combine(ca, cb, shift - BITS, meet);
+                children[i] = child;
+                same &= child == ca;
+            }
+        }
+        return same ? a : new Node(bitmap, children, codes);
+    }
+
+    /**
+     * @return true if two tries have the same content.
+     */
+    private static boolean equal(Node a, Node b, int shift) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.bitmap != b.bitmap) {
+            return false;
+        }
+        if (shift == 0) {
+            return Arrays.equals(a.codes, b.codes);
+        }
+        for (int i = 0; i < a.children.length; ++i) {
+            if (!equal(a.children[i], b.children[i], shift - BITS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis;
+
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.dataflow.fact.ProductFact;
+import pascal.taie.analysis.dataflow.solver.Solver;
+import pascal.taie.analysis.graph.cfg.CFG;
+import pascal.taie.util.AnalysisException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs several forward analyses in a single solver pass, on the product
+ * of their lattices. Meet and transfer functions are applied to the
+ * analyses component-wise, so the CFG is traversed and the work-list is
+ * managed once for all of them. As the analyses are independent, the
+ * fixed point of the product is the tuple of their own fixed points.
+ * <p>
+ * The product is a {@link WideningAnalysis}, so that analyses with tall
+ * lattices, e.g., {@link pascal.taie.analysis.dataflow.analysis.constprop.IntervalAnalysis},
+ * can take part. At loop heads, the facts of such analyses are widened and
+ * narrowed by their own operators, and the facts of the other analyses
+ * are joined and recomputed, respectively, which are the identity on
+ * their fixed points.
+ *
+ * @param <Node> type of CFG nodes
+ */
+public class ProductAnalysis<Node> implements WideningAnalysis<Node, ProductFact> {
+
+    private final List<DataflowAnalysis<Node, Object>> analyses;
+
+    private final Solver<Node, ProductFact> solver;
+
+    /**
+     * @param analyses the forward analyses to run together
+     */
+    public ProductAnalysis(List<? extends DataflowAnalysis<Node, ?>> analyses) {
+        this.analyses = new ArrayList<>(analyses.size());
+        for (DataflowAnalysis<Node, ?> analysis : analyses) {
+            if (!analysis.isForward()) {
+                throw new AnalysisException("Not a forward analysis: " + analysis);
+            }
+            this.analyses.add(erase(analysis));
+        }
+        solver = Solver.makeSolver(this);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <Node> DataflowAnalysis<Node, Object> erase(
+            DataflowAnalysis<Node, ?> analysis) {
+        return (DataflowAnalysis<Node, Object>) analysis;
+    }
+
+    /**
+     * Solves all analyses on given CFG in one pass.
+     *
+     * @return the results of the analyses, in the order of the analyses
+     * given to the constructor.
+     */
+    public List<DataflowResult<Node, ?>> solve(CFG<Node> cfg) {
+        return split(cfg, solver.solve(cfg));
+    }
+
+    /**
+     * Splits a result of this analysis into the results of the analyses.
+     */
+    public List<DataflowResult<Node, ?>> split(CFG<Node> cfg,
+                                               DataflowResult<Node, ProductFact> result) {
+        List<DataflowResult<Node, Object>> results = new ArrayList<>(analyses.size());
+        for (int i = 0; i < analyses.size(); ++i) {
+            results.add(new DataflowResult<>());
+        }
+        for (Node node : cfg.getNodes()) {
+            ProductFact in = result.getInFact(node);
+            ProductFact out = result.getOutFact(node);
+            for (int i = 0; i < analyses.size(); ++i) {
+                results.get(i).setInFact(node, in.get(i));
+                results.get(i).setOutFact(node, out.get(i));
+            }
+        }
+        return List.copyOf(results);
+    }
+
+    @Override
+    public boolean isForward() {
+        return true;
+    }
+
+    @Override
+    public ProductFact newBoundaryFact(CFG<Node> cfg) {
+        Object[] facts = new Object[analyses.size()];
+        for (int i = 0; i < facts.length; ++i) {
+            facts[i] = analyses.get(i).newBoundaryFact(cfg);
+        }
+        return new ProductFact(facts);
+    }
+
+    @Override
+    public ProductFact newInitialFact() {
+        Object[] facts = new Object[analyses.size()];
+        for (int i = 0; i < facts.length; ++i) {
+            facts[i] = analyses.get(i).newInitialFact();
+        }
+        return new ProductFact(facts);
+    }
+
+    @Override
+    public void meetInto(ProductFact fact, ProductFact target) {
+        for (int i = 0; i < analyses.size(); ++i) {
+            analyses.get(i).meetInto(fact.get(i), target.get(i));
+        }
+    }
+
+    @Override
+    public boolean transferNode(Node node, ProductFact in, ProductFact out) {
+        boolean changed = false;
+        for (int i = 0; i < analyses.size(); ++i) {
+            changed |= analyses.get(i).transferNode(node, in.get(i), out.get(i));
+        }
+        return changed;
+    }
+
+    @Override
+    public ProductFact widen(ProductFact oldFact, ProductFact newFact) {
+        Object[] facts = new Object[analyses.size()];
+        for (int i = 0; i < facts.length; ++i) {
+            DataflowAnalysis<Node, Object> analysis = analyses.get(i);
+            if (analysis instanceof WideningAnalysis<Node, Object> widening) {
+                facts[i] = widening.widen(oldFact.get(i), newFact.get(i));
+            } else {
+                facts[i] = analysis.newInitialFact();
+                analysis.meetInto(oldFact.get(i), facts[i]);
+                analysis.meetInto(newFact.get(i), facts[i]);
+            }
+        }
+        return new ProductFact(facts);
+    }
+
+    @Override
+    public ProductFact narrow(ProductFact oldFact, ProductFact newFact) {
+        Object[] facts = new Object[analyses.size()];
+        for (int i = 0; i < facts.length; ++i) {
+            facts[i] = analyses.get(i) instanceof WideningAnalysis<Node, Object> widening
+                    ? widening.narrow(oldFact.get(i), newFact.get(i))
+                    : newFact.get(i);
+        }
+        return new ProductFact(facts);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.fact;
+
+import java.util.Arrays;
+
+/**
+ * Fact of a product lattice, i.e., a tuple of facts of several analyses,
+ * see {@link pascal.taie.analysis.dataflow.analysis.ProductAnalysis}.
+ */
+public class ProductFact {
+
+    private final Object[] facts;
+
+    public ProductFact(Object[] facts) {
+        this.facts = facts;
+    }
+
+    /**
+     * @return the fact of the i-th analysis.
+     */
+    public Object get(int i) {
+        return facts[i];
+    }
+
+    public int size() {
+        return facts.length;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ProductFact that && Arrays.equals(facts, that.facts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(facts);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(facts);
+    }
+}
@@ -0,0 +1,600 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.solver;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.analysis.dataflow.analysis.CacheableAnalysis;
+import pascal.taie.analysis.dataflow.analysis.DataflowAnalysis;
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.graph.cfg.CFG;
+import pascal.taie.analysis.graph.cfg.CFGBuilder;
+import pascal.taie.analysis.graph.cfg.Edge;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Stmt;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent cache of per-method analysis results, so that methods
+ * which are unchanged since a previous run cost only a hash and a lookup.
+ * <p>
+ * The cache is disabled by default, and is enabled by setting system
+ * property "taie.cache.dir" to a directory. Entries are keyed by
+ * a SHA-256 hash of the IR and the CFG of the method together with
+ * the analysis ID and options, so that a changed method or configuration
+ * simply misses. Each analysis has a binary file in the directory, which
+ * is memory-mapped when the analysis first looks it up. The entries added
+ * during a run are written back when the JVM exits.
+ * <p>
+ * The entries of a file are kept in order of their last use, and when
+ * a file is written back, its least recently used entries are evicted
+ * until it fits in the size given by system property "taie.cache.max.size"
+ * in megabytes, {@link #DEFAULT_MAX_SIZE} by default.
+ * <p>
+ * Of a data-flow result, only the output facts, i.e., the OUT facts of
+ * forward analyses and the IN facts of backward ones, are stored. The input
+ * fact of a node is recomputed by meeting the output facts of its previous
+ * nodes, and stored only where it differs from that, e.g., when it has
+ * been widened. Results given up by {@link SolverBudget} are not cached.
+ * An entry which is corrupt or cannot be decoded is treated as a miss,
+ * and is replaced by the solved result.
+ */
+public final class ResultCache {
+
+    private static final Logger logger = LogManager.getLogger(ResultCache.class);
+
+    private static final Path DIR = getDir();
+
+    private static volatile boolean enabled = DIR != null;
+
+    private static final long DEFAULT_MAX_SIZE = 256;
+
+    /**
+     * Maximum size of each cache file in bytes.
+     */
+    private static final long MAX_SIZE = Long.getLong(
+            "taie.cache.max.size", DEFAULT_MAX_SIZE) * 1024 * 1024;
+
+    /**
+     * "TAIC", the first bytes of every cache file.
+     */
+    private static final int MAGIC = 0x54414943;
+
+    private static final int VERSION = 3;
+
+    private static final int KEY_SIZE = 32;
+
+    /**
+     * Hashes of IRs, so that the IR of a method is hashed only once
+     * for all analyses.
+     */
+    private static final Map<IR, byte[]> irHashes =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final Map<String, Store> stores = new ConcurrentHashMap<>();
+
+    static {
+        if (DIR != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                for (Store store : stores.values()) {
+                    try {
+                        store.save();
+                    } catch (IOException e) {
+                        logger.error("Failed to save result cache {}", store.file, e);
+                    }
+                }
+            }));
+        }
+    }
+
+    private ResultCache() {
+    }
+
+    private static Path getDir() {
+        String dir = System.getProperty("taie.cache.dir");
+        return dir != null ? Path.of(dir) : null;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the cache for the rest of the run, e.g., for
+     * benchmarks which must solve every method. The cache cannot be
+     * enabled if system property "taie.cache.dir" is not set.
+     */
+    public static void setEnabled(boolean enabled) {
+        ResultCache.enabled = enabled && DIR != null;
+    }
+
+    /**
+     * @param options options of the analysis, compared by their string form
+     * @return the key of the result of given analysis on given IR.
+     */
+    public static byte[] newKey(String analysisId, Object options, IR ir) {
+        MessageDigest digest = newDigest();
+        digest.update(getHash(ir));
+        update(digest, analysisId);
+        update(digest, String.valueOf(options));
+        return digest.digest();
+    }
+
+    /**
+     * @return the cached entry of given key, which is read from its
+     * beginning, or null if the cache does not contain the key.
+     */
+    public static ByteBuffer get(String analysisId, byte[] key) {
+        return getStore(analysisId).get(key);
+    }
+
+    public static void put(String analysisId, byte[] key, byte[] entry) {
+        getStore(analysisId).put(key, entry);
+    }
+
+    /**
+     * Loads the cached data-flow result of given key into given empty
+     * result, which is left untouched if the cache does not contain the key.
+     *
+     * @return true if the result has been loaded.
+     */
+    @SuppressWarnings("unchecked")
+    static <Node, Fact> boolean loadResult(
+            String analysisId, byte[] key, DataflowAnalysis<Node, Fact> analysis,
+            CFG<Node> cfg, DataflowResult<Node, Fact> result) {
+        ByteBuffer in = get(analysisId, key);
+        if (in == null) {
+            return false;
+        }
+        CacheableAnalysis<Fact> cacheable = (CacheableAnalysis<Fact>) analysis;
+        IR ir = cfg.getMethod().getIR();
+        boolean forward = analysis.isForward();
+        List<Node> nodes = getNodes(cfg);
+        // decodes the whole entry before touching the result, so that
+        // a malformed entry leaves the result empty for solving
+        List<Fact> outputs = new ArrayList<>(nodes.size());
+        Map<Node, Fact> storedInputs = new HashMap<>();
+        try {
+            for (Node node : nodes) {
+                outputs.add(cacheable.readFact(ir, in));
+                if (in.get() != 0) {
+                    storedInputs.put(node, cacheable.readFact(ir, in));
+                }
+            }
+            if (in.hasRemaining()) {
+                throw new IllegalArgumentException("trailing bytes");
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException
+                 | IllegalArgumentException e) {
+            logger.warn("Ignored malformed result cache entry of {} for {}",
+                    analysisId, cfg.getMethod());
+            return false;
+        }
+        for (int i = 0; i < nodes.size(); ++i) {
+            setOutput(result, nodes.get(i), outputs.get(i), forward);
+        }
+        // all outputs are set before any input is recomputed from them
+        for (Node node : nodes) {
+            if (!keepsInput(result, node, forward)) {
+                continue;
+            }
+            Fact input = storedInputs.get(node);
+            setInput(result, node, input != null ? input
+                    : meetOutputs(analysis, cfg, result, node), forward);
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <Node, Fact> void storeResult(
+            String analysisId, byte[] key, DataflowAnalysis<Node, Fact> analysis,
+            CFG<Node> cfg, DataflowResult<Node, Fact> result) {
+        CacheableAnalysis<Fact> cacheable = (CacheableAnalysis<Fact>) analysis;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        boolean forward = analysis.isForward();
+        try {
+            for (Node node : getNodes(cfg)) {
+                cacheable.writeFact(Solver.getOutput(result, node, forward), out);
+                Fact input = Solver.getInput(result, node, forward);
+                if (input.equals(meetOutputs(analysis, cfg, result, node))) {
+                    out.writeByte(0);
+                } else {
+                    out.writeByte(1);
+                    cacheable.writeFact(input, out);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        put(analysisId, key, bytes.toByteArray());
+    }
+
+    /**
+     * @return a new fact which meets the output facts of the previous
+     * nodes of given node, i.e., its predecessors for forward analyses
+     * and its successors for backward ones.
+     */
+    private static <Node, Fact> Fact meetOutputs(
+            DataflowAnalysis<Node, Fact> analysis, CFG<Node> cfg,
+            DataflowResult<Node, Fact> result, Node node) {
+        boolean forward = analysis.isForward();
+        Fact fact = analysis.newInitialFact();
+        for (Node prev : forward ? cfg.getPredsOf(node) : cfg.getSuccsOf(node)) {
+            analysis.meetInto(Solver.getOutput(result, prev, forward), fact);
+        }
+        return fact;
+    }
+
+    /**
+     * @return false if given result drops the input fact of given node,
+     * i.e., the node is inside a block of {@link BlockDataflowResult}.
+     * Such facts are re-derived by the result from the facts at the block
+     * boundaries, thus they need not, and must not, be recomputed here
+     * before the boundary facts are restored.
+     */
+    private static <Node, Fact> boolean keepsInput(
+            DataflowResult<Node, Fact> result, Node node, boolean forward) {
+        if (result instanceof BlockDataflowResult<Node, Fact> blockResult) {
+            return forward ? blockResult.keepsInFact(node) : blockResult.keepsOutFact(node);
+        }
+        return true;
+    }
+
+    private static <Node, Fact> void setInput(
+            DataflowResult<Node, Fact> result, Node node, Fact fact, boolean forward) {
+        if (forward) {
+            result.setInFact(node, fact);
+        } else {
+            result.setOutFact(node, fact);
+        }
+    }
+
+    private static <Node, Fact> void setOutput(
+            DataflowResult<Node, Fact> result, Node node, Fact fact, boolean forward) {
+        if (forward) {
+            result.setOutFact(node, fact);
+        } else {
+            result.setInFact(node, fact);
+        }
+    }
+
+    /**
+     * @return nodes of given CFG in a fixed order: the entry, the exit,
+     * then the statements in the order of the IR.
+     */
+    @SuppressWarnings("unchecked")
+    private static <Node> List<Node> getNodes(CFG<Node> cfg) {
+        List<Stmt> stmts = cfg.getMethod().getIR().getStmts();
+        List<Node> nodes = new ArrayList<>(stmts.size() + 2);
+        nodes.add(cfg.getEntry());
+        nodes.add(cfg.getExit());
+        Set<Node> cfgNodes = cfg.getNodes();
+        for (Stmt stmt : stmts) {
+            if (cfgNodes.contains(stmt)) {
+                nodes.add((Node) stmt);
+            }
+        }
+        return nodes;
+    }
+
+    private static byte[] getHash(IR ir) {
+        byte[] hash = irHashes.get(ir);
+        if (hash == null) {
+            hash = hashIR(ir);
+            irHashes.put(ir, hash);
+        }
+        return hash;
+    }
+
+    private static byte[] hashIR(IR ir) {
+        MessageDigest digest = newDigest();
+        update(digest, ir.getMethod().getSignature());
+        for (Var var : ir.getVars()) {
+            update(digest, var.getName() + ':' + var.getType());
+        }
+        for (Var param : ir.getParams()) {
+            update(digest, param.getName());
+        }
+        for (Stmt stmt : ir.getStmts()) {
+            update(digest, stmt.toString());
+        }
+        // edges depend on the options of CFG builder, e.g., exceptions
+        CFG<Stmt> cfg = ir.getResult(CFGBuilder.ID);
+        updateEdges(digest, cfg, cfg.getEntry());
+        for (Stmt stmt : ir.getStmts()) {
+            updateEdges(digest, cfg, stmt);
+        }
+        return digest.digest();
+    }
+
+    private static void updateEdges(MessageDigest digest, CFG<Stmt> cfg, Stmt node) {
+        int[] edges = cfg.getOutEdgesOf(node)
+                .stream()
+                .mapToInt(edge -> getNodeId(cfg, edge.getTarget())
+                        * Edge.Kind.values().length + edge.getKind().ordinal())
+                .toArray();
+        Arrays.sort(edges);
+        ByteBuffer buffer = ByteBuffer.allocate(4 * edges.length + 4);
+        buffer.putInt(edges.length);
+        for (int edge : edges) {
+            buffer.putInt(edge);
+        }
+        digest.update(buffer.array());
+    }
+
+    private static int getNodeId(CFG<Stmt> cfg, Stmt node) {
+        if (cfg.isEntry(node)) {
+            return 0;
+        }
+        if (cfg.isExit(node)) {
+            return 1;
+        }
+        return node.getIndex() + 2;
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is supported by every JVM", e);
+        }
+    }
+
+    private static Store getStore(String analysisId) {
+        return stores.computeIfAbsent(analysisId,
+                id -> new Store(DIR.resolve(id + ".cache")));
+    }
+
+    /**
+     * Cache file of an analysis. The file consists of {@link #MAGIC},
+     * {@link #VERSION}, and then entries, each of which is a key of
+     * {@link #KEY_SIZE} bytes, the length of the entry, the CRC-32 checksum
+     * of the entry, and the entry. The checksum of a loaded entry is
+     * verified when the entry is looked up, and a corrupt entry misses.
+     * The entries are in order of their last use, the oldest first.
+     */
+    private static final class Store {
+
+        private final Path file;
+
+        /**
+         * Entries loaded from the file, which are views of the mapped file.
+         */
+        private final Map<ByteBuffer, ByteBuffer> entries = new ConcurrentHashMap<>();
+
+        /**
+         * Keys of the loaded entries in order of the file.
+         */
+        private final List<ByteBuffer> order = new ArrayList<>();
+
+        /**
+         * Checksums of the loaded entries as stored in the file.
+         */
+        private final Map<ByteBuffer, Integer> checksums = new ConcurrentHashMap<>();
+
+        /**
+         * Keys of the loaded entries whose checksums have been verified.
+         */
+        private final Set<ByteBuffer> verified = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Keys of the loaded entries which have been used during this run.
+         */
+        private final Set<ByteBuffer> used = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Entries added during this run.
+         */
+        private final Map<ByteBuffer, byte[]> added = new ConcurrentHashMap<>();
+
+        private Store(Path file) {
+            this.file = file;
+            if (Files.exists(file)) {
+                try {
+                    load();
+                } catch (IOException e) {
+                    logger.warn("Ignored unreadable result cache {}: {}", file, e.getMessage());
+                    entries.clear();
+                    checksums.clear();
+                    order.clear();
+                }
+            }
+        }
+
+        private void load() throws IOException {
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC
+                    || buffer.getInt() != VERSION) {
+                throw new IOException("unknown format");
+            }
+            while (buffer.hasRemaining()) {
+                if (buffer.remaining() < KEY_SIZE + 8) {
+                    throw new IOException("truncated entry");
+                }
+                byte[] key = new byte[KEY_SIZE];
+                buffer.get(key);
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("truncated entry");
+                }
+                ByteBuffer k = ByteBuffer.wrap(key);
+                if (entries.put(k, buffer.slice(buffer.position(), length)) == null) {
+                    order.add(k);
+                }
+                checksums.put(k, checksum);
+                buffer.position(buffer.position() + length);
+            }
+        }
+
+        private ByteBuffer get(byte[] key) {
+            ByteBuffer k = ByteBuffer.wrap(key);
+            ByteBuffer entry = entries.get(k);
+            if (entry != null && !verified.contains(k)) {
+                if (checksum(entry.duplicate()) != checksums.get(k)) {
+                    logger.warn("Ignored corrupt entry of result cache {}", file);
+                    entries.remove(k);
+                    return null;
+                }
+                verified.add(k);
+            }
+            if (entry != null) {
+                used.add(k);
+                // each reader has its own position
+                return entry.duplicate();
+            }
+            byte[] addedEntry = added.get(k);
+            return addedEntry != null ? ByteBuffer.wrap(addedEntry) : null;
+        }
+
+        private void put(byte[] key, byte[] entry) {
+            if (key.length != KEY_SIZE) {
+                throw new IllegalArgumentException("Invalid cache key");
+            }
+            ByteBuffer k = ByteBuffer.wrap(key);
+            // replaces a loaded entry which could not be decoded
+            entries.remove(k);
+            added.put(k, entry);
+        }
+
+        /**
+         * Writes the loaded and the added entries to a new file, which then
+         * replaces the old one. The entries used during this run are moved
+         * to the end, and the least recently used entries are evicted
+         * while the file exceeds {@link #MAX_SIZE}. The file is written
+         * whenever this run added, used or dropped entries, as each of them
+         * changes the file, e.g., a run of only hits refreshes the order.
+         */
+        private void save() throws IOException {
+            if (added.isEmpty() && used.isEmpty() && entries.size() == order.size()) {
+                return;
+            }
+            List<ByteBuffer> keys = new ArrayList<>(order.size() + added.size());
+            for (ByteBuffer k : order) {
+                if (!entries.containsKey(k)) {
+                    // dropped as corrupt, or replaced
+                    continue;
+                }
+                if (!used.contains(k)) {
+                    keys.add(k);
+                }
+            }
+            for (ByteBuffer k : order) {
+                if (entries.containsKey(k) && used.contains(k)) {
+                    keys.add(k);
+                }
+            }
+            keys.addAll(added.keySet());
+            long size = 8;
+            for (ByteBuffer k : keys) {
+                size += sizeOf(k);
+            }
+            int first = 0;
+            while (size > MAX_SIZE && first < keys.size()) {
+                size -= sizeOf(keys.get(first++));
+            }
+            if (first > 0) {
+                logger.info("Evicted {} least recently used entries from result cache {}",
+                        first, file);
+            }
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                for (ByteBuffer k : keys.subList(first, keys.size())) {
+                    ByteBuffer loaded = entries.get(k);
+                    byte[] entry;
+                    if (loaded != null) {
+                        entry = new byte[loaded.remaining()];
+                        loaded.duplicate().get(entry);
+                    } else {
+                        entry = added.get(k);
+                    }
+                    write(out, k, entry);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * @return size of the entry of given key in the file.
+         */
+        private long sizeOf(ByteBuffer key) {
+            ByteBuffer loaded = entries.get(key);
+            return KEY_SIZE + 8 + (loaded != null
+                    ? loaded.remaining() : added.get(key).length);
+        }
+
+        private static int checksum(ByteBuffer entry) {
+            CRC32 crc = new CRC32();
+            crc.update(entry);
+            return (int) crc.getValue();
+        }
+
+        private static void write(DataOutputStream out, ByteBuffer key, byte[] entry)
+                throws IOException {
+            out.write(key.array());
+            out.writeInt(entry.length);
+            out.writeInt(checksum(ByteBuffer.wrap(entry)));
+            out.write(entry);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis;
+
+import pascal.taie.analysis.graph.cfg.CFG;
+
+/**
+ * Data-flow analysis which can give up on a method soundly.
+ * When a solve exceeds its {@link pascal.taie.analysis.dataflow.solver.SolverBudget},
+ * the solver stops iterating and uses the saturated fact of the analysis
+ * as both IN and OUT fact of every node of the method.
+ *
+ * @param <Node> type of CFG nodes
+ * @param <Fact> type of data-flow facts
+ */
+public interface SaturatingAnalysis<Node, Fact> extends DataflowAnalysis<Node, Fact> {
+
+    /**
+     * @return a fact which over-approximates every fact that may hold
+     * at any node of given CFG, e.g., NAC for all variables in constant
+     * propagation, or all variables in live variable analysis.
+     */
+    Fact newSaturatedFact(CFG<Node> cfg);
+}
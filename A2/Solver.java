@@ -22,10 +22,27 @@
 
 package pascal.taie.analysis.dataflow.solver;
 
+import pascal.taie.analysis.Analysis;
+import pascal.taie.analysis.dataflow.analysis.CacheableAnalysis;
 import pascal.taie.analysis.dataflow.analysis.DataflowAnalysis;
-import pascal.taie.analysis.dataflow.analysis.constprop.CPFact;
+import pascal.taie.analysis.dataflow.analysis.SaturatingAnalysis;
+import pascal.taie.analysis.dataflow.analysis.WideningAnalysis;
 import pascal.taie.analysis.dataflow.fact.DataflowResult;
 import pascal.taie.analysis.graph.cfg.CFG;
+import pascal.taie.ir.stmt.Stmt;
+import pascal.taie.util.AnalysisException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Base class for data-flow analysis solver, which provides common
@@ -44,41 +61,197 @@ public abstract class Solver<Node, Fact> {
 
     /**
      * Static factory method to create a new solver for given analysis.
+     * The solving strategy can be chosen per analysis by option "solver":
+     * <ul>
+     *     <li>"worklist" (default): {@link WorkListSolver}</li>
+     *     <li>"iterative": {@link IterativeSolver}</li>
+     *     <li>"block": {@link BlockSolver}</li>
+     *     <li>"wto": {@link WtoSolver}</li>
+     * </ul>
+     * Only "worklist" and "wto" apply the operators of
+     * a {@link WideningAnalysis}, thus the others are rejected for it.
      */
     public static <Node, Fact> Solver<Node, Fact> makeSolver(
             DataflowAnalysis<Node, Fact> analysis) {
-        return new WorkListSolver<>(analysis);
+        Object strategy = getOption(analysis, "solver");
+        if (analysis instanceof WideningAnalysis && strategy != null
+                && !strategy.equals("worklist") && !strategy.equals("wto")) {
+            throw new AnalysisException("Solver " + strategy
+                    + " does not support widening, use worklist or wto");
+        }
+        if (strategy == null || strategy.equals("worklist")) {
+            return new WorkListSolver<>(analysis);
+        } else if (strategy.equals("iterative")) {
+            return new IterativeSolver<>(analysis);
+        } else if (strategy.equals("block")) {
+            return new BlockSolver<>(analysis);
+        } else if (strategy.equals("wto")) {
+            return new WtoSolver<>(analysis);
+        } else {
+            throw new AnalysisException("Unknown solver: " + strategy);
+        }
+    }
+
+    /**
+     * @return value of the option of given analysis, or null if
+     * the analysis does not have such option.
+     */
+    static Object getOption(DataflowAnalysis<?, ?> analysis, String key) {
+        if (analysis instanceof Analysis a) {
+            return a.getOptions().get(key);
+        }
+        return null;
     }
 
     /**
      * Starts this solver on the given CFG.
+     * If option "result" of the analysis is "lazy", the returned result
+     * keeps facts only at join points and loop heads, and recomputes
+     * the others on demand (see {@link LazyDataflowResult}).
+     * <p>
+     * If the analysis is a {@link SaturatingAnalysis} and the solve
+     * exceeds its {@link SolverBudget}, the solver gives up the method,
+     * see {@link #saturate(CFG, SaturatingAnalysis)}.
+     * <p>
+     * If the analysis is a {@link CacheableAnalysis} and
+     * {@link ResultCache} is enabled, the result is looked up in
+     * the cache before solving, and stored into it after solving.
+     * A cached result is loaded into the same kind of result as
+     * a solved one, and option "result" applies to it alike.
      *
      * @param cfg control-flow graph where the analysis is performed on
      * @return the analysis result
      */
     public DataflowResult<Node, Fact> solve(CFG<Node> cfg) {
-        DataflowResult<Node, Fact> result = initialize(cfg);
-        doSolve(cfg, result);
+        String analysisId = analysis instanceof Analysis a
+                ? a.getId() : analysis.getClass().getSimpleName();
+        DataflowResult<Node, Fact> result = newResult(cfg);
+        if (ResultCache.isEnabled() && analysis instanceof CacheableAnalysis) {
+            byte[] cacheKey = ResultCache.newKey(analysisId,
+                    analysis instanceof Analysis a ? a.getOptions() : null,
+                    cfg.getMethod().getIR());
+            if (!ResultCache.loadResult(analysisId, cacheKey, analysis, cfg, result)) {
+                if (!solve(cfg, result, analysisId)) {
+                    return saturate(cfg, (SaturatingAnalysis<Node, Fact>) analysis);
+                }
+                ResultCache.storeResult(analysisId, cacheKey, analysis, cfg, result);
+            }
+        } else if (!solve(cfg, result, analysisId)) {
+            return saturate(cfg, (SaturatingAnalysis<Node, Fact>) analysis);
+        }
+        if ("lazy".equals(getOption(analysis, "result"))) {
+            return new LazyDataflowResult<>(analysis, cfg, result, computeAnchors(cfg));
+        }
         return result;
     }
 
     /**
-     * Creates and initializes a new data-flow result for given CFG.
+     * Solves the data-flow problem for given CFG into given empty result.
      *
-     * @return the initialized data-flow result
+     * @return false if the solve has exceeded its {@link SolverBudget},
+     * in which case the result is incomplete.
+     */
+    private boolean solve(CFG<Node> cfg, DataflowResult<Node, Fact> result,
+                          String analysisId) {
+        SolverMetrics.Record record = SolverMetrics.begin(getClass().getSimpleName(),
+                analysisId, cfg.getMethod().toString());
+        // analyses which cannot be saturated are never given up, thus they
+        // bind no budget, which also hides the budget of an enclosing solve
+        SolverBudget budget = analysis instanceof SaturatingAnalysis
+                ? SolverBudget.newBudget() : null;
+        SolverBudget previous = SolverBudget.begin(budget);
+        try {
+            initialize(cfg, result);
+            doSolve(cfg, result);
+            return true;
+        } catch (SolverBudget.ExceededException e) {
+            e.getBudget().logSaturation(getClass().getSimpleName(),
+                    analysisId, cfg.getMethod().toString());
+            return false;
+        } finally {
+            SolverBudget.end(previous);
+            SolverMetrics.end(record);
+        }
+    }
+
+    /**
+     * @return a result which maps the IN and OUT facts of every node
+     * of given CFG to the saturated fact of the analysis. The fact is
+     * shared by all nodes, thus it must not be modified.
      */
-    private DataflowResult<Node, Fact> initialize(CFG<Node> cfg) {
+    private DataflowResult<Node, Fact> saturate(CFG<Node> cfg,
+                                                SaturatingAnalysis<Node, Fact> analysis) {
         DataflowResult<Node, Fact> result = new DataflowResult<>();
+        Fact fact = analysis.newSaturatedFact(cfg);
+        for (Node node : cfg.getNodes()) {
+            result.setInFact(node, fact);
+            result.setOutFact(node, fact);
+        }
+        return result;
+    }
+
+    /**
+     * @return nodes whose input facts cannot be derived from a unique
+     * previous node, i.e., nodes with zero or several previous nodes,
+     * and loop heads.
+     */
+    private Set<Node> computeAnchors(CFG<Node> cfg) {
+        boolean forward = analysis.isForward();
+        Map<Node, Integer> indexes = indexNodes(computeReversePostOrder(cfg, forward));
+        Set<Node> anchors = computeLoopHeads(cfg, indexes, forward);
+        for (Node node : cfg.getNodes()) {
+            if (nextsOf(cfg, node, !forward).size() != 1) {
+                anchors.add(node);
+            }
+        }
+        return anchors;
+    }
+
+    /**
+     * @param indexes positions of the nodes in reverse postorder,
+     *                see {@link #computeReversePostOrder(CFG, boolean)}
+     * @return loop heads of given CFG, i.e., targets of retreating edges
+     * in reverse postorder. Every cycle of the CFG contains a loop head.
+     */
+    protected Set<Node> computeLoopHeads(CFG<Node> cfg, Map<Node, Integer> indexes,
+                                         boolean forward) {
+        Set<Node> loopHeads = new HashSet<>();
+        for (Node node : cfg.getNodes()) {
+            for (Node next : nextsOf(cfg, node, forward)) {
+                if (indexes.get(next) <= indexes.get(node)) {
+                    loopHeads.add(next);
+                }
+            }
+        }
+        return loopHeads;
+    }
+
+    /**
+     * Initializes given empty data-flow result for given CFG.
+     */
+    private void initialize(CFG<Node> cfg, DataflowResult<Node, Fact> result) {
         if (analysis.isForward()) {
             initializeForward(cfg, result);
         } else {
             initializeBackward(cfg, result);
         }
-        return result;
+    }
+
+    /**
+     * @return a new empty data-flow result for given CFG, which is an
+     * {@link IndexedDataflowResult} for CFGs of statements, unless option
+     * "result" of the analysis is "map". Solvers which do not store facts
+     * for every node override this.
+     */
+    protected DataflowResult<Node, Fact> newResult(CFG<Node> cfg) {
+        if (cfg.getEntry() instanceof Stmt
+                && !"map".equals(getOption(analysis, "result"))) {
+            return new IndexedDataflowResult<>(cfg);
+        }
+        return new DataflowResult<>();
     }
 
     protected void initializeForward(CFG<Node> cfg, DataflowResult<Node, Fact> result) {
-        // TODO - finish me
         for (Node node : cfg.getNodes()) {
             result.setInFact(node, analysis.newInitialFact());
             result.setOutFact(node, analysis.newInitialFact());
@@ -87,7 +260,11 @@ public abstract class Solver<Node, Fact> {
     }
 
     protected void initializeBackward(CFG<Node> cfg, DataflowResult<Node, Fact> result) {
-        throw new UnsupportedOperationException();
+        for (Node node : cfg.getNodes()) {
+            result.setInFact(node, analysis.newInitialFact());
+            result.setOutFact(node, analysis.newInitialFact());
+        }
+        result.setInFact(cfg.getExit(), analysis.newBoundaryFact(cfg));
     }
 
     /**
@@ -104,4 +281,220 @@ public abstract class Solver<Node, Fact> {
     protected abstract void doSolveForward(CFG<Node> cfg, DataflowResult<Node, Fact> result);
 
     protected abstract void doSolveBackward(CFG<Node> cfg, DataflowResult<Node, Fact> result);
+
+    /**
+     * Meets OUT facts of the predecessors of given node into its IN fact,
+     * then applies the transfer function of the node.
+     *
+     * @return true if the OUT fact of the node has been changed.
+     */
+    protected boolean visitForward(CFG<Node> cfg, Node node,
+                                   DataflowResult<Node, Fact> result) {
+        recordVisit();
+        Fact in = result.getInFact(node);
+        for (Node pred : cfg.getPredsOf(node)) {
+            meetInto(result.getOutFact(pred), in);
+        }
+        return transferNode(node, in, result.getOutFact(node));
+    }
+
+    /**
+     * Meets IN facts of the successors of given node into its OUT fact,
+     * then applies the transfer function of the node.
+     *
+     * @return true if the IN fact of the node has been changed.
+     */
+    protected boolean visitBackward(CFG<Node> cfg, Node node,
+                                    DataflowResult<Node, Fact> result) {
+        recordVisit();
+        Fact out = result.getOutFact(node);
+        for (Node succ : cfg.getSuccsOf(node)) {
+            meetInto(result.getInFact(succ), out);
+        }
+        return transferNode(node, result.getInFact(node), out);
+    }
+
+    /**
+     * Meets the facts flowing into given loop head into a fresh fact,
+     * widens the input fact of the loop head with it, and then applies
+     * the transfer function of the loop head.
+     *
+     * @return true if the output fact of the loop head has been changed.
+     */
+    protected boolean visitWidening(WideningAnalysis<Node, Fact> widening,
+                                    CFG<Node> cfg, Node node,
+                                    DataflowResult<Node, Fact> result, boolean forward) {
+        recordVisit();
+        Fact input = analysis.newInitialFact();
+        for (Node prev : nextsOf(cfg, node, !forward)) {
+            meetInto(getOutput(result, prev, forward), input);
+        }
+        input = widening.widen(getInput(result, node, forward), input);
+        if (forward) {
+            result.setInFact(node, input);
+            return transferNode(node, input, result.getOutFact(node));
+        } else {
+            result.setOutFact(node, input);
+            return transferNode(node, result.getInFact(node), input);
+        }
+    }
+
+    /**
+     * Narrowing phase after the widening fixed point. Facts of all nodes are
+     * recomputed from scratch instead of being met into the old ones, so
+     * that they can become more precise, and are narrowed at loop heads
+     * to ensure termination.
+     *
+     * @param order   order in which pending nodes are picked
+     * @param indexes positions of the nodes in the order
+     */
+    protected void narrow(WideningAnalysis<Node, Fact> widening,
+                          CFG<Node> cfg, DataflowResult<Node, Fact> result,
+                          List<Node> order, Map<Node, Integer> indexes,
+                          Set<Node> loopHeads, boolean forward) {
+        BitSet workList = new BitSet(order.size());
+        workList.set(0, order.size());
+        workList.clear(indexes.get(forward ? cfg.getEntry() : cfg.getExit()));
+        for (int i = workList.nextSetBit(0); i >= 0; i = workList.nextSetBit(0)) {
+            workList.clear(i);
+            Node node = order.get(i);
+            recordVisit();
+            Fact input = analysis.newInitialFact();
+            for (Node prev : nextsOf(cfg, node, !forward)) {
+                meetInto(getOutput(result, prev, forward), input);
+            }
+            if (loopHeads.contains(node)) {
+                input = widening.narrow(getInput(result, node, forward), input);
+            }
+            Fact output = analysis.newInitialFact();
+            if (forward) {
+                result.setInFact(node, input);
+                transferNode(node, input, output);
+            } else {
+                result.setOutFact(node, input);
+                transferNode(node, output, input);
+            }
+            if (!output.equals(getOutput(result, node, forward))) {
+                if (forward) {
+                    result.setOutFact(node, output);
+                } else {
+                    result.setInFact(node, output);
+                }
+                for (Node next : nextsOf(cfg, node, forward)) {
+                    workList.set(indexes.get(next));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return IN fact of given node if forward, otherwise its OUT fact.
+     */
+    protected static <Node, Fact> Fact getInput(
+            DataflowResult<Node, Fact> result, Node node, boolean forward) {
+        return forward ? result.getInFact(node) : result.getOutFact(node);
+    }
+
+    /**
+     * @return OUT fact of given node if forward, otherwise its IN fact.
+     */
+    protected static <Node, Fact> Fact getOutput(
+            DataflowResult<Node, Fact> result, Node node, boolean forward) {
+        return forward ? result.getOutFact(node) : result.getInFact(node);
+    }
+
+    /**
+     * Calls {@link DataflowAnalysis#meetInto} and counts it
+     * in {@link SolverMetrics}.
+     */
+    protected void meetInto(Fact fact, Fact target) {
+        analysis.meetInto(fact, target);
+        if (SolverMetrics.isEnabled()) {
+            SolverMetrics.recordMeet();
+        }
+    }
+
+    /**
+     * Calls {@link DataflowAnalysis#transferNode} and counts it
+     * in {@link SolverMetrics}.
+     */
+    protected boolean transferNode(Node node, Fact in, Fact out) {
+        boolean changed = analysis.transferNode(node, in, out);
+        if (SolverMetrics.isEnabled()) {
+            SolverMetrics.recordTransfer(changed, analysis.isForward() ? out : in);
+        }
+        return changed;
+    }
+
+    /**
+     * Counts a visit of a node (or a group of nodes) in {@link SolverMetrics}
+     * and {@link SolverBudget}.
+     *
+     * @throws SolverBudget.ExceededException if the budget of
+     *                                        the solve is exceeded.
+     */
+    protected static void recordVisit() {
+        if (SolverMetrics.isEnabled()) {
+            SolverMetrics.recordVisit();
+        }
+        if (SolverBudget.isEnabled()) {
+            SolverBudget.recordVisit();
+        }
+    }
+
+    /**
+     * @return map from each node in given order to its position.
+     */
+    protected Map<Node, Integer> indexNodes(List<Node> order) {
+        Map<Node, Integer> indexes = new HashMap<>(order.size() * 2);
+        for (int i = 0; i < order.size(); ++i) {
+            indexes.put(order.get(i), i);
+        }
+        return indexes;
+    }
+
+    /**
+     * @param forward if true, traverses the CFG from the entry along
+     *                successors, otherwise from the exit along predecessors.
+     * @return nodes of given CFG in reverse postorder of a depth-first
+     * traversal. Nodes that are not visited by the traversal are appended
+     * at the end, so that the result covers all nodes.
+     */
+    protected List<Node> computeReversePostOrder(CFG<Node> cfg, boolean forward) {
+        Node start = forward ? cfg.getEntry() : cfg.getExit();
+        List<Node> postOrder = new ArrayList<>(cfg.getNodes().size());
+        Set<Node> visited = new HashSet<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        Deque<Iterator<Node>> nextIters = new ArrayDeque<>();
+        visited.add(start);
+        stack.push(start);
+        nextIters.push(nextsOf(cfg, start, forward).iterator());
+        while (!stack.isEmpty()) {
+            Iterator<Node> nexts = nextIters.peek();
+            if (nexts.hasNext()) {
+                Node next = nexts.next();
+                if (visited.add(next)) {
+                    stack.push(next);
+                    nextIters.push(nextsOf(cfg, next, forward).iterator());
+                }
+            } else {
+                postOrder.add(stack.pop());
+                nextIters.pop();
+            }
+        }
+        Collections.reverse(postOrder);
+        for (Node node : cfg.getNodes()) {
+            if (visited.add(node)) {
+                postOrder.add(node);
+            }
+        }
+        return postOrder;
+    }
+
+    /**
+     * @return successors of given node if forward, otherwise predecessors.
+     */
+    protected static <Node> Set<Node> nextsOf(CFG<Node> cfg, Node node, boolean forward) {
+        return forward ? cfg.getSuccsOf(node) : cfg.getPredsOf(node);
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis;
+
+/**
+ * Data-flow analysis with widening and narrowing operators, for lattices
+ * which are too tall (or infinite) for plain iteration to converge quickly.
+ * The work-list solver applies them at the loop heads of the CFG: it first
+ * iterates with widening until a fixed point, then performs a narrowing
+ * phase to recover some of the precision lost by widening.
+ *
+ * @param <Node> type of CFG nodes
+ * @param <Fact> type of data-flow facts
+ */
+public interface WideningAnalysis<Node, Fact> extends DataflowAnalysis<Node, Fact> {
+
+    /**
+     * @param oldFact the fact at a loop head so far
+     * @param newFact the fact newly flowing into the loop head
+     * @return a fact which approximates both of them, such that any
+     * sequence of widening reaches a fixed point in finite steps.
+     * It may be one of the given facts.
+     */
+    Fact widen(Fact oldFact, Fact newFact);
+
+    /**
+     * @param oldFact the fact at a loop head after widening
+     * @param newFact the fact newly flowing into the loop head
+     * @return a fact between newFact and oldFact, such that any
+     * sequence of narrowing reaches a fixed point in finite steps.
+     * It may be one of the given facts.
+     */
+    Fact narrow(Fact oldFact, Fact newFact);
+}
@@ -23,39 +23,171 @@
 package pascal.taie.analysis.dataflow.solver;
 
 import pascal.taie.analysis.dataflow.analysis.DataflowAnalysis;
+import pascal.taie.analysis.dataflow.analysis.DeltaDataflowAnalysis;
+import pascal.taie.analysis.dataflow.analysis.WideningAnalysis;
+import pascal.taie.analysis.dataflow.fact.BitVarSetFact;
 import pascal.taie.analysis.dataflow.fact.DataflowResult;
 import pascal.taie.analysis.graph.cfg.CFG;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Work-list solver for both forward and backward analyses.
+ * Nodes are numbered in reverse postorder (of the reversed CFG for
+ * backward analyses), and the work-list always picks the pending node
+ * with the smallest number, so that a node is (apart from back edges)
+ * processed after all nodes that flow into it.
+ * <p>
+ * If option "delta" is true and the analysis is a
+ * {@link DeltaDataflowAnalysis}, nodes are revisited semi-naively,
+ * i.e., only on the variables that changed since their last visit.
+ * <p>
+ * If the analysis is a {@link WideningAnalysis}, facts are widened at loop
+ * heads until a fixed point is reached, then narrowed in a second phase.
+ */
 class WorkListSolver<Node, Fact> extends Solver<Node, Fact> {
 
+    private final boolean delta;
+
+    /**
+     * The analysis if it is a {@link WideningAnalysis}, otherwise null.
+     */
+    private final WideningAnalysis<Node, Fact> widening;
+
     WorkListSolver(DataflowAnalysis<Node, Fact> analysis) {
         super(analysis);
+        widening = analysis instanceof WideningAnalysis<Node, Fact> w ? w : null;
+        // delta transfers cannot be combined with widening
+        delta = analysis instanceof DeltaDataflowAnalysis
+                && widening == null
+                && Boolean.TRUE.equals(getOption(analysis, "delta"));
     }
 
     @Override
     protected void doSolveForward(CFG<Node> cfg, DataflowResult<Node, Fact> result) {
-        // TODO - finish me
-        Set<Node> worklist = new HashSet<>(cfg.getNodes());
-        while (!worklist.isEmpty()) {
-            Node node = worklist.iterator().next();
-            worklist.remove(node);
-            for (Node pred : cfg.getPredsOf(node)) {
-                analysis.meetInto(result.getOutFact(pred), result.getInFact(node));
-            }
-            Fact in = result.getInFact(node);
-            Fact out = result.getOutFact(node);
-            if (analysis.transferNode(node, in, out)) {
-                result.setOutFact(node, out);
-                worklist.addAll(cfg.getSuccsOf(node));
+        if (delta) {
+            doSolveDelta(cfg, result, true);
+            return;
+        }
+        List<Node> order = computeReversePostOrder(cfg, true);
+        Map<Node, Integer> indexes = indexNodes(order);
+        BitSet workList = new BitSet(order.size());
+        workList.set(0, order.size());
+        workList.clear(indexes.get(cfg.getEntry()));
+        Set<Node> loopHeads = widening != null
+                ? computeLoopHeads(cfg, indexes, true) : Set.of();
+        for (int i = workList.nextSetBit(0); i >= 0; i = workList.nextSetBit(0)) {
+            workList.clear(i);
+            Node node = order.get(i);
+            if (loopHeads.contains(node)
+                    ? visitWidening(widening, cfg, node, result, true)
+                    : visitForward(cfg, node, result)) {
+                for (Node succ : cfg.getSuccsOf(node)) {
+                    workList.set(indexes.get(succ));
+                }
             }
         }
+        if (widening != null) {
+            narrow(widening, cfg, result, order, indexes, loopHeads, true);
+        }
     }
 
     @Override
     protected void doSolveBackward(CFG<Node> cfg, DataflowResult<Node, Fact> result) {
-        throw new UnsupportedOperationException();
+        if (delta) {
+            doSolveDelta(cfg, result, false);
+            return;
+        }
+        List<Node> order = computeReversePostOrder(cfg, false);
+        Map<Node, Integer> indexes = indexNodes(order);
+        BitSet workList = new BitSet(order.size());
+        workList.set(0, order.size());
+        workList.clear(indexes.get(cfg.getExit()));
+        Set<Node> loopHeads = widening != null
+                ? computeLoopHeads(cfg, indexes, false) : Set.of();
+        for (int i = workList.nextSetBit(0); i >= 0; i = workList.nextSetBit(0)) {
+            workList.clear(i);
+            Node node = order.get(i);
+            if (loopHeads.contains(node)
+                    ? visitWidening(widening, cfg, node, result, false)
+                    : visitBackward(cfg, node, result)) {
+                for (Node pred : cfg.getPredsOf(node)) {
+                    workList.set(indexes.get(pred));
+                }
+            }
+        }
+        if (widening != null) {
+            narrow(widening, cfg, result, order, indexes, loopHeads, false);
+        }
+    }
+
+    /**
+     * Semi-naive work-list algorithm. A node is transferred in full on its
+     * first visit only. After that, every change of its output fact is
+     * met eagerly into the input facts of the next nodes, which record the
+     * variables that changed, and are then transferred on those only.
+     */
+    private void doSolveDelta(CFG<Node> cfg, DataflowResult<Node, Fact> result,
+                              boolean forward) {
+        DeltaDataflowAnalysis<Node, Fact> deltaAnalysis =
+                (DeltaDataflowAnalysis<Node, Fact>) analysis;
+        List<Node> order = computeReversePostOrder(cfg, forward);
+        Map<Node, Integer> indexes = indexNodes(order);
+        BitSet workList = new BitSet(order.size());
+        workList.set(0, order.size());
+        workList.clear(indexes.get(forward ? cfg.getEntry() : cfg.getExit()));
+        BitSet visited = new BitSet(order.size());
+        List<BitVarSetFact> deltas = new ArrayList<>(order.size());
+        for (int i = 0; i < order.size(); ++i) {
+            deltas.add(new BitVarSetFact());
+        }
+        BitVarSetFact changedVars = new BitVarSetFact();
+        for (int i = workList.nextSetBit(0); i >= 0; i = workList.nextSetBit(0)) {
+            workList.clear(i);
+            Node node = order.get(i);
+            boolean changed;
+            BitVarSetFact outputDelta;
+            if (!visited.get(i)) {
+                visited.set(i);
+                changed = forward ? visitForward(cfg, node, result)
+                        : visitBackward(cfg, node, result);
+                // the whole output fact is new to the next nodes
+                outputDelta = null;
+            } else {
+                recordVisit();
+                changedVars.clear();
+                changed = deltaAnalysis.transferNodeDelta(node,
+                        result.getInFact(node), result.getOutFact(node),
+                        deltas.get(i), changedVars);
+                if (SolverMetrics.isEnabled()) {
+                    SolverMetrics.recordTransfer(changed, forward
+                            ? result.getOutFact(node) : result.getInFact(node));
+                }
+                outputDelta = changedVars;
+            }
+            deltas.get(i).clear();
+            if (changed) {
+                Fact output = forward ? result.getOutFact(node)
+                        : result.getInFact(node);
+                for (Node next : nextsOf(cfg, node, forward)) {
+                    int j = indexes.get(next);
+                    // unvisited nodes are pending and will meet all inputs
+                    if (!visited.get(j)) {
+                        continue;
+                    }
+                    if (SolverMetrics.isEnabled()) {
+                        SolverMetrics.recordMeet();
+                    }
+                    if (deltaAnalysis.meetDeltaInto(output, outputDelta,
+                            getInput(result, next, forward), deltas.get(j))) {
+                        workList.set(j);
+                    }
+                }
+            }
+        }
     }
 }
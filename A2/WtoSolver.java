@@ -0,0 +1,275 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.solver;
+
+import pascal.taie.analysis.dataflow.analysis.DataflowAnalysis;
+import pascal.taie.analysis.dataflow.analysis.WideningAnalysis;
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.graph.cfg.CFG;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Solver which follows a weak topological order (WTO) of the CFG,
+ * i.e., the recursive iteration strategy of Bourdoncle.
+ * <p>
+ * The WTO is a hierarchical decomposition of the CFG (of the reversed
+ * CFG for backward analyses) into components: each strongly connected
+ * component is a component, whose head is its first node in reverse
+ * postorder, and whose other nodes are decomposed recursively.
+ * The nodes and components are then visited in topological order,
+ * and a component is iterated until its head is stable, so that inner
+ * loops are stabilized before their outer loops.
+ * <p>
+ * If the analysis is a {@link WideningAnalysis}, facts are widened at the
+ * heads of components until a fixed point is reached, then narrowed in a
+ * second phase.
+ */
+class WtoSolver<Node, Fact> extends Solver<Node, Fact> {
+
+    /**
+     * The analysis if it is a {@link WideningAnalysis}, otherwise null.
+     */
+    private final WideningAnalysis<Node, Fact> widening;
+
+    WtoSolver(DataflowAnalysis<Node, Fact> analysis) {
+        super(analysis);
+        widening = analysis instanceof WideningAnalysis<Node, Fact> w ? w : null;
+    }
+
+    @Override
+    protected void doSolveForward(CFG<Node> cfg, DataflowResult<Node, Fact> result) {
+        doSolve(cfg, result, true);
+    }
+
+    @Override
+    protected void doSolveBackward(CFG<Node> cfg, DataflowResult<Node, Fact> result) {
+        doSolve(cfg, result, false);
+    }
+
+    private void doSolve(CFG<Node> cfg, DataflowResult<Node, Fact> result,
+                         boolean forward) {
+        List<Node> rpo = computeReversePostOrder(cfg, forward);
+        Map<Node, Integer> rpoIndexes = indexNodes(rpo);
+        Wto<Node> wto = new Wto<>();
+        decompose(cfg, rpo, new HashSet<>(rpo), rpoIndexes, forward, wto);
+        new Iteration(cfg, result, wto, forward).stabilize(0, wto.nodes.size());
+        if (widening != null) {
+            narrow(widening, cfg, result, wto.nodes, indexNodes(wto.nodes),
+                    wto.heads, forward);
+        }
+    }
+
+    /**
+     * Weak topological order, flattened: the nodes in order, where each
+     * component is its head followed by the elements of its body.
+     */
+    private static class Wto<Node> {
+
+        private final List<Node> nodes = new ArrayList<>();
+
+        /**
+         * For each position, the position after the component whose head
+         * is at the position, or -1 if the node there is not a head.
+         */
+        private final List<Integer> ends = new ArrayList<>();
+
+        private final Set<Node> heads = new HashSet<>();
+    }
+
+    /**
+     * Appends the WTO of the subgraph induced by given nodes to the WTO.
+     *
+     * @param nodes   nodes of the subgraph in reverse postorder
+     * @param members the same nodes as a set
+     */
+    private void decompose(CFG<Node> cfg, List<Node> nodes, Set<Node> members,
+                           Map<Node, Integer> rpoIndexes, boolean forward,
+                           Wto<Node> wto) {
+        Comparator<Node> byRpo = Comparator.comparing(rpoIndexes::get);
+        for (List<Node> scc : computeSCCs(cfg, nodes, members, forward)) {
+            if (scc.size() == 1 && !nextsOf(cfg, scc.get(0), forward).contains(scc.get(0))) {
+                wto.nodes.add(scc.get(0));
+                wto.ends.add(-1);
+            } else {
+                scc.sort(byRpo);
+                Node head = scc.get(0);
+                int position = wto.nodes.size();
+                wto.nodes.add(head);
+                wto.ends.add(-1);
+                wto.heads.add(head);
+                List<Node> body = scc.subList(1, scc.size());
+                decompose(cfg, body, new HashSet<>(body), rpoIndexes, forward, wto);
+                wto.ends.set(position, wto.nodes.size());
+            }
+        }
+    }
+
+    /**
+     * Computes the strongly connected components of the subgraph induced
+     * by given nodes with Tarjan's algorithm (without recursion).
+     *
+     * @return the components in topological order.
+     */
+    private List<List<Node>> computeSCCs(CFG<Node> cfg, List<Node> nodes,
+                                         Set<Node> members, boolean forward) {
+        List<List<Node>> sccs = new ArrayList<>();
+        Map<Node, Integer> indexes = new HashMap<>();
+        Map<Node, Integer> lowLinks = new HashMap<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        Set<Node> onStack = new HashSet<>();
+        Deque<Node> callStack = new ArrayDeque<>();
+        Deque<Iterator<Node>> nextIters = new ArrayDeque<>();
+        for (Node root : nodes) {
+            if (indexes.containsKey(root)) {
+                continue;
+            }
+            indexes.put(root, indexes.size());
+            lowLinks.put(root, indexes.get(root));
+            stack.push(root);
+            onStack.add(root);
+            callStack.push(root);
+            nextIters.push(nextsOf(cfg, root, forward).iterator());
+            while (!callStack.isEmpty()) {
+                Node node = callStack.peek();
+                Iterator<Node> nexts = nextIters.peek();
+                if (nexts.hasNext()) {
+                    Node next = nexts.next();
+                    if (!members.contains(next)) {
+                        continue;
+                    }
+                    if (!indexes.containsKey(next)) {
+                        indexes.put(next, indexes.size());
+                        lowLinks.put(next, indexes.get(next));
+                        stack.push(next);
+                        onStack.add(next);
+                        callStack.push(next);
+                        nextIters.push(nextsOf(cfg, next, forward).iterator());
+                    } else if (onStack.contains(next)) {
+                        lowLinks.put(node, Math.min(lowLinks.get(node), indexes.get(next)));
+                    }
+                } else {
+                    callStack.pop();
+                    nextIters.pop();
+                    if (!callStack.isEmpty()) {
+                        Node caller = callStack.peek();
+                        lowLinks.put(caller, Math.min(lowLinks.get(caller), lowLinks.get(node)));
+                    }
+                    if (lowLinks.get(node).equals(indexes.get(node))) {
+                        List<Node> scc = new ArrayList<>();
+                        Node member;
+                        do {
+                            member = stack.pop();
+                            onStack.remove(member);
+                            scc.add(member);
+                        } while (member != node);
+                        sccs.add(scc);
+                    }
+                }
+            }
+        }
+        // Tarjan's algorithm finds the components in reverse topological order
+        Collections.reverse(sccs);
+        return sccs;
+    }
+
+    /**
+     * Recursive iteration over a WTO.
+     */
+    private class Iteration {
+
+        private final CFG<Node> cfg;
+
+        private final DataflowResult<Node, Fact> result;
+
+        private final List<Node> nodes;
+
+        private final int[] ends;
+
+        private final boolean forward;
+
+        private Iteration(CFG<Node> cfg, DataflowResult<Node, Fact> result,
+                          Wto<Node> wto, boolean forward) {
+            this.cfg = cfg;
+            this.result = result;
+            this.nodes = wto.nodes;
+            this.ends = wto.ends.stream().mapToInt(Integer::intValue).toArray();
+            this.forward = forward;
+        }
+
+        /**
+         * Visits the elements of the WTO in [from, to) once each,
+         * stabilizing the components among them.
+         */
+        private void stabilize(int from, int to) {
+            int i = from;
+            while (i < to) {
+                if (ends[i] < 0) {
+                    visit(nodes.get(i));
+                    ++i;
+                } else {
+                    stabilizeComponent(i);
+                    i = ends[i];
+                }
+            }
+        }
+
+        /**
+         * Iterates the component whose head is at given position, until
+         * the output fact of the head does not change anymore. The body
+         * is visited at least once.
+         */
+        private void stabilizeComponent(int head) {
+            Node node = nodes.get(head);
+            boolean first = true;
+            while ((widening != null
+                    ? visitWidening(widening, cfg, node, result, forward)
+                    : visit(node)) || first) {
+                first = false;
+                stabilize(head + 1, ends[head]);
+            }
+        }
+
+        /**
+         * @return true if the output fact of given node has been changed.
+         */
+        private boolean visit(Node node) {
+            if (forward) {
+                // OUT fact of the entry is the boundary fact
+                return !cfg.isEntry(node) && visitForward(cfg, node, result);
+            } else {
+                return !cfg.isExit(node) && visitBackward(cfg, node, result);
+            }
+        }
+    }
+}
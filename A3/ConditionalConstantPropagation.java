@@ -0,0 +1,555 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis.constprop;
+
+import pascal.taie.analysis.MethodAnalysis;
+import pascal.taie.analysis.graph.cfg.CFG;
+import pascal.taie.analysis.graph.cfg.CFGBuilder;
+import pascal.taie.analysis.graph.cfg.Edge;
+import pascal.taie.config.AnalysisConfig;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.RValue;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.DefinitionStmt;
+import pascal.taie.ir.stmt.If;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.Stmt;
+import pascal.taie.ir.stmt.SwitchStmt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Sparse conditional constant propagation in the style of Wegman and Zadeck.
+ * <p>
+ * Values are kept only at definitions: the statements which assign int
+ * variables, the entry of the method, and the phis of merge statements,
+ * i.e., statements with several in-edges. Each use of a variable is linked
+ * to the single definition which reaches it, which gives SSA-like def-use
+ * chains on the IR, which is not in SSA form. The chains are built on
+ * demand for the statements which become reachable, in the style of
+ * Braun et al., so phis are only created for the variables which are
+ * used after a merge.
+ * <p>
+ * The work-list of CFG edges which became executable and the work-list of
+ * definitions whose values changed share one fixpoint. A phi only meets
+ * the values along the executable in-edges of its merge, and an outgoing
+ * edge of an {@code if} or {@code switch} becomes executable only if its
+ * condition allows it. Thus both the constants and the unreachable code
+ * of a method come out of one pass.
+ */
+public class ConditionalConstantPropagation extends MethodAnalysis {
+
+    public static final String ID = "cond-constprop";
+
+    public ConditionalConstantPropagation(AnalysisConfig config) {
+        super(config);
+    }
+
+    @Override
+    public Result analyze(IR ir) {
+        return analyze(ir, null);
+    }
+
+    /**
+     * @param neverReturns tells the call sites whose callees never return
+     *                     normally, from which only exceptional edges are
+     *                     executable, or null if unknown
+     */
+    public Result analyze(IR ir, Predicate<Invoke> neverReturns) {
+        Propagator propagator = new Propagator(ir, neverReturns);
+        propagator.solve();
+        return new Result(propagator.reachable, propagator.executable,
+                propagator.stmtDefs, propagator.useDefs);
+    }
+
+    /**
+     * Definition of an int variable, whose value only goes down the lattice.
+     */
+    private static final class Def {
+
+        private final Var var;
+
+        /**
+         * The merge of a phi, otherwise null.
+         */
+        private final Merge merge;
+
+        /**
+         * Definitions reaching the merge along its in-edges, for phis.
+         * An operand is resolved when its in-edge becomes executable.
+         */
+        private final Def[] operands;
+
+        private long value = EncodedValues.UNDEF;
+
+        private boolean inWorkList;
+
+        /**
+         * Reachable statements which use this definition.
+         */
+        private final List<Stmt> users = new ArrayList<>(2);
+
+        /**
+         * Phis which take this definition as an operand.
+         */
+        private final List<Def> phiUsers = new ArrayList<>(2);
+
+        private Def(Var var, Merge merge) {
+            this.var = var;
+            this.merge = merge;
+            this.operands = merge != null
+                    ? new Def[merge.inEdges.size()] : null;
+        }
+    }
+
+    /**
+     * Statement with several in-edges, and its phis by their variables.
+     */
+    private record Merge(List<Edge<Stmt>> inEdges, Map<Var, Def> phis) {
+    }
+
+    private static final class Propagator {
+
+        private final IR ir;
+
+        private final CFG<Stmt> cfg;
+
+        private final Predicate<Invoke> neverReturns;
+
+        /**
+         * Indexes of the reachable statements.
+         */
+        private final BitSet reachable;
+
+        private final Set<Edge<Stmt>> executable = new HashSet<>();
+
+        /**
+         * Definitions of the statements which assign int variables,
+         * by statement index.
+         */
+        private final Def[] stmtDefs;
+
+        /**
+         * Definitions reaching the int variables used by each reachable
+         * statement, by statement index.
+         */
+        private final Def[][] useDefs;
+
+        private final Map<Var, Def> entryDefs = new HashMap<>();
+
+        private final Map<Stmt, Merge> merges = new HashMap<>();
+
+        /**
+         * Definitions reaching the statements without phis which have
+         * been walked when building the chains, keyed by the indexes of
+         * the statement and the variable. This keeps the chains of long
+         * straight-line code linear to build.
+         */
+        private final Map<Long, Def> reachingDefs = new HashMap<>();
+
+        private final Queue<Def> pendingPhis = new ArrayDeque<>();
+
+        private final Queue<Edge<Stmt>> edgeWorkList = new ArrayDeque<>();
+
+        private final Queue<Def> defWorkList = new ArrayDeque<>();
+
+        /**
+         * Reachable {@code if} and {@code switch} statements whose
+         * conditions must be evaluated again.
+         */
+        private final Queue<Stmt> branchWorkList = new ArrayDeque<>();
+
+        private final BitSet inBranchWorkList;
+
+        /**
+         * Values of the variables used by the statement being evaluated.
+         */
+        private final ArrayCPFact operands = new ArrayCPFact();
+
+        private Propagator(IR ir, Predicate<Invoke> neverReturns) {
+            this.ir = ir;
+            this.cfg = ir.getResult(CFGBuilder.ID);
+            this.neverReturns = neverReturns;
+            int numberOfStmts = ir.getStmts().size();
+            reachable = new BitSet(numberOfStmts);
+            stmtDefs = new Def[numberOfStmts];
+            useDefs = new Def[numberOfStmts][];
+            inBranchWorkList = new BitSet(numberOfStmts);
+        }
+
+        /**
+         * Changed values are propagated before conditions are evaluated,
+         * and conditions are evaluated before new edges are visited.
+         * As an UNDEF condition conservatively makes all branches
+         * executable, conditions are thus only decided on settled values.
+         */
+        private void solve() {
+            cfg.getOutEdgesOf(cfg.getEntry()).forEach(this::markExecutable);
+            while (true) {
+                Def def = defWorkList.poll();
+                if (def != null) {
+                    def.inWorkList = false;
+                    for (Stmt user : def.users) {
+                        evaluate(user);
+                    }
+                    for (Def phi : def.phiUsers) {
+                        evaluatePhi(phi);
+                    }
+                    continue;
+                }
+                Stmt branch = branchWorkList.poll();
+                if (branch != null) {
+                    inBranchWorkList.clear(branch.getIndex());
+                    evaluateBranch(branch);
+                    continue;
+                }
+                Edge<Stmt> edge = edgeWorkList.poll();
+                if (edge == null) {
+                    return;
+                }
+                visitEdge(edge);
+            }
+        }
+
+        private void markExecutable(Edge<Stmt> edge) {
+            if (executable.add(edge)) {
+                edgeWorkList.add(edge);
+            }
+        }
+
+        private void visitEdge(Edge<Stmt> edge) {
+            Stmt target = edge.getTarget();
+            if (cfg.isExit(target)) {
+                return;
+            }
+            Merge merge = merges.get(target);
+            if (merge != null) {
+                int i = merge.inEdges().indexOf(edge);
+                for (Def phi : merge.phis().values()) {
+                    resolveOperand(phi, i);
+                }
+                resolvePendingPhis();
+                merge.phis().values().forEach(this::evaluatePhi);
+            }
+            if (!reachable.get(target.getIndex())) {
+                reachable.set(target.getIndex());
+                visit(target);
+            }
+        }
+
+        /**
+         * Links the uses of given statement, which just became reachable,
+         * to their definitions, and evaluates it.
+         */
+        private void visit(Stmt stmt) {
+            List<Def> defs = new ArrayList<>();
+            for (RValue use : stmt.getUses()) {
+                if (use instanceof Var var && ConstantPropagation.canHoldInt(var)) {
+                    Def def = reachingDef(var, stmt);
+                    if (!defs.contains(def)) {
+                        defs.add(def);
+                        def.users.add(stmt);
+                    }
+                }
+            }
+            useDefs[stmt.getIndex()] = defs.toArray(new Def[0]);
+            resolvePendingPhis();
+            evaluate(stmt);
+            if (stmt instanceof Invoke invoke
+                    && neverReturns != null && neverReturns.test(invoke)) {
+                for (Edge<Stmt> edge : cfg.getOutEdgesOf(stmt)) {
+                    if (edge.isExceptional()) {
+                        markExecutable(edge);
+                    }
+                }
+            } else if (!(stmt instanceof If || stmt instanceof SwitchStmt)) {
+                cfg.getOutEdgesOf(stmt).forEach(this::markExecutable);
+            }
+        }
+
+        /**
+         * Evaluates the definition of given reachable statement under
+         * the current values of its uses, or queues it if it is a branch.
+         */
+        private void evaluate(Stmt stmt) {
+            if (stmt instanceof If || stmt instanceof SwitchStmt) {
+                if (!inBranchWorkList.get(stmt.getIndex())) {
+                    inBranchWorkList.set(stmt.getIndex());
+                    branchWorkList.add(stmt);
+                }
+            } else if (stmt instanceof DefinitionStmt<?, ?> defStmt
+                    && defStmt.getLValue() instanceof Var var
+                    && ConstantPropagation.canHoldInt(var)) {
+                loadOperands(stmt);
+                lower(stmtDef(stmt, var), ConstantPropagation.evaluateCode(
+                        defStmt.getRValue(), operands));
+            }
+        }
+
+        private void loadOperands(Stmt stmt) {
+            for (Def def : useDefs[stmt.getIndex()]) {
+                operands.updateCode(def.var, def.value);
+            }
+        }
+
+        /**
+         * Marks the outgoing edges of given {@code if} or {@code switch}
+         * statement executable if its condition allows them.
+         */
+        private void evaluateBranch(Stmt stmt) {
+            loadOperands(stmt);
+            if (stmt instanceof If ifStmt) {
+                long cond = ConstantPropagation.evaluateCode(
+                        ifStmt.getCondition(), operands);
+                for (Edge<Stmt> edge : cfg.getOutEdgesOf(stmt)) {
+                    if (!EncodedValues.isConstant(cond) || switch (edge.getKind()) {
+                        case IF_TRUE -> EncodedValues.getConstant(cond) != 0;
+                        case IF_FALSE -> EncodedValues.getConstant(cond) == 0;
+                        default -> true;
+                    }) {
+                        markExecutable(edge);
+                    }
+                }
+            } else if (stmt instanceof SwitchStmt switchStmt) {
+                long cond = ConstantPropagation.evaluateCode(
+                        switchStmt.getVar(), operands);
+                if (!EncodedValues.isConstant(cond)) {
+                    // NAC or UNDEF: conservatively follow all outgoing edges
+                    cfg.getOutEdgesOf(stmt).forEach(this::markExecutable);
+                    return;
+                }
+                int value = EncodedValues.getConstant(cond);
+                boolean matchedCase = cfg.getOutEdgesOf(stmt).stream().anyMatch(e ->
+                        e.getKind() == Edge.Kind.SWITCH_CASE && e.getCaseValue() == value);
+                for (Edge<Stmt> edge : cfg.getOutEdgesOf(stmt)) {
+                    if (switch (edge.getKind()) {
+                        case SWITCH_CASE -> edge.getCaseValue() == value;
+                        case SWITCH_DEFAULT -> !matchedCase;
+                        default -> true;
+                    }) {
+                        markExecutable(edge);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Meets the values of the operands of given phi along
+         * the executable in-edges of its merge.
+         */
+        private void evaluatePhi(Def phi) {
+            long value = EncodedValues.UNDEF;
+            for (Def operand : phi.operands) {
+                if (operand != null) {
+                    value = EncodedValues.meet(value, operand.value);
+                }
+            }
+            lower(phi, value);
+        }
+
+        private void lower(Def def, long value) {
+            long lowered = EncodedValues.meet(def.value, value);
+            if (lowered != def.value) {
+                def.value = lowered;
+                if (!def.inWorkList) {
+                    def.inWorkList = true;
+                    defWorkList.add(def);
+                }
+            }
+        }
+
+        /**
+         * @return the definition of given variable reaching
+         * the IN of given statement.
+         */
+        private Def reachingDef(Var var, Stmt stmt) {
+            List<Long> walked = new ArrayList<>();
+            Def def;
+            while (true) {
+                if (cfg.isEntry(stmt)) {
+                    def = entryDef(var);
+                    break;
+                }
+                Set<Edge<Stmt>> inEdges = cfg.getInEdgesOf(stmt);
+                if (inEdges.size() != 1) {
+                    def = phi(var, stmt);
+                    break;
+                }
+                long key = ((long) stmt.getIndex() << 32) | var.getIndex();
+                def = reachingDefs.get(key);
+                if (def != null) {
+                    break;
+                }
+                walked.add(key);
+                Stmt pred = inEdges.iterator().next().getSource();
+                if (defines(pred, var)) {
+                    def = stmtDef(pred, var);
+                    break;
+                }
+                stmt = pred;
+            }
+            for (Long key : walked) {
+                reachingDefs.put(key, def);
+            }
+            return def;
+        }
+
+        /**
+         * Links the operand of given phi along the in-edge of given index,
+         * if it has not been linked.
+         */
+        private void resolveOperand(Def phi, int i) {
+            if (phi.operands[i] == null) {
+                Stmt pred = phi.merge.inEdges().get(i).getSource();
+                Def operand = defines(pred, phi.var)
+                        ? stmtDef(pred, phi.var)
+                        : reachingDef(phi.var, pred);
+                phi.operands[i] = operand;
+                operand.phiUsers.add(phi);
+            }
+        }
+
+        /**
+         * Links the operands of the phis created while walking the chains,
+         * along the executable in-edges, and evaluates the phis.
+         * Phis are queued rather than resolved recursively, as merges
+         * may be nested deeply.
+         */
+        private void resolvePendingPhis() {
+            Def phi;
+            while ((phi = pendingPhis.poll()) != null) {
+                List<Edge<Stmt>> inEdges = phi.merge.inEdges();
+                for (int i = 0; i < inEdges.size(); ++i) {
+                    if (executable.contains(inEdges.get(i))) {
+                        resolveOperand(phi, i);
+                    }
+                }
+                evaluatePhi(phi);
+            }
+        }
+
+        private Def phi(Var var, Stmt stmt) {
+            Merge merge = merges.computeIfAbsent(stmt, s ->
+                    new Merge(List.copyOf(cfg.getInEdgesOf(s)), new HashMap<>()));
+            return merge.phis().computeIfAbsent(var, v -> {
+                Def phi = new Def(v, merge);
+                pendingPhis.add(phi);
+                return phi;
+            });
+        }
+
+        private Def stmtDef(Stmt stmt, Var var) {
+            Def def = stmtDefs[stmt.getIndex()];
+            if (def == null) {
+                def = stmtDefs[stmt.getIndex()] = new Def(var, null);
+            }
+            return def;
+        }
+
+        private Def entryDef(Var var) {
+            return entryDefs.computeIfAbsent(var, v -> {
+                Def def = new Def(v, null);
+                // parameters are NAC, as in ConstantPropagation
+                if (ir.getParams().contains(v)) {
+                    def.value = EncodedValues.NAC;
+                }
+                return def;
+            });
+        }
+
+        private static boolean defines(Stmt stmt, Var var) {
+            return stmt instanceof DefinitionStmt<?, ?> defStmt
+                    && var.equals(defStmt.getLValue());
+        }
+    }
+
+    /**
+     * Result of conditional constant propagation on a method.
+     */
+    public static class Result {
+
+        private final BitSet reachable;
+
+        private final Set<Edge<Stmt>> executable;
+
+        private final Def[] stmtDefs;
+
+        private final Def[][] useDefs;
+
+        private Result(BitSet reachable, Set<Edge<Stmt>> executable,
+                       Def[] stmtDefs, Def[][] useDefs) {
+            this.reachable = reachable;
+            this.executable = executable;
+            this.stmtDefs = stmtDefs;
+            this.useDefs = useDefs;
+        }
+
+        /**
+         * @return true if given statement of the IR is reachable.
+         */
+        public boolean isReachable(Stmt stmt) {
+            return reachable.get(stmt.getIndex());
+        }
+
+        public boolean isExecutable(Edge<Stmt> edge) {
+            return executable.contains(edge);
+        }
+
+        /**
+         * @return the value which given statement assigns to the int
+         * variable it defines. It is UNDEF if the statement is unreachable
+         * or does not define an int variable.
+         */
+        public Value getDefinedValue(Stmt stmt) {
+            Def def = stmtDefs[stmt.getIndex()];
+            return EncodedValues.decode(def != null && isReachable(stmt)
+                    ? def.value : EncodedValues.UNDEF);
+        }
+
+        /**
+         * @return the value of given int variable at the IN of given
+         * statement which uses it. It is UNDEF if the statement is
+         * unreachable or does not use the variable.
+         */
+        public Value getValue(Stmt stmt, Var var) {
+            Def[] defs = useDefs[stmt.getIndex()];
+            if (defs != null) {
+                for (Def def : defs) {
+                    if (def.var.equals(var)) {
+                        return EncodedValues.decode(def.value);
+                    }
+                }
+            }
+            return Value.getUndef();
+        }
+    }
+}
@@ -24,131 +24,301 @@ package pascal.taie.analysis.dataflow.analysis;
 
 import pascal.taie.analysis.MethodAnalysis;
 import pascal.taie.analysis.dataflow.analysis.constprop.CPFact;
+import pascal.taie.analysis.dataflow.analysis.constprop.ConditionalConstantPropagation;
 import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
 import pascal.taie.analysis.dataflow.analysis.constprop.Value;
 import pascal.taie.analysis.dataflow.fact.DataflowResult;
 import pascal.taie.analysis.dataflow.fact.SetFact;
+import pascal.taie.analysis.dataflow.solver.ResultCache;
+import pascal.taie.analysis.dataflow.solver.SolverBudget;
 import pascal.taie.analysis.graph.cfg.CFG;
 import pascal.taie.analysis.graph.cfg.CFGBuilder;
 import pascal.taie.analysis.graph.cfg.Edge;
 import pascal.taie.config.AnalysisConfig;
+import pascal.taie.config.AnalysisOptions;
 import pascal.taie.ir.IR;
 import pascal.taie.ir.exp.*;
 import pascal.taie.ir.stmt.AssignStmt;
 import pascal.taie.ir.stmt.If;
+import pascal.taie.ir.stmt.Invoke;
 import pascal.taie.ir.stmt.Stmt;
 import pascal.taie.ir.stmt.SwitchStmt;
 
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 public class DeadCodeDetection extends MethodAnalysis {
 
     public static final String ID = "deadcode";
 
+    private final ConditionalConstantPropagation condProp;
+
     public DeadCodeDetection(AnalysisConfig config) {
         super(config);
+        condProp = new ConditionalConstantPropagation(
+                new AnalysisConfig(ConditionalConstantPropagation.ID));
+    }
+
+    /**
+     * @return a builder of the CFGs of methods which have none yet, for
+     * the analyses which run dead code detection on such methods. Option
+     * "exception" of given options is passed to {@link CFGBuilder}:
+     * "explicit" (default), "all", or "none" for no exceptional edges.
+     */
+    static CFGBuilder newCFGBuilder(AnalysisOptions options) {
+        Object exception = options.get("exception");
+        if (exception == null) {
+            exception = "explicit";
+        } else if (exception.equals("none")) {
+            exception = null;
+        }
+        return new CFGBuilder(new AnalysisConfig(CFGBuilder.ID,
+                "exception", exception, "dump", false));
     }
 
+    /**
+     * If {@link ResultCache} is enabled, the dead code of unchanged methods
+     * is taken from the cache. The cache is bypassed when {@link SolverBudget}
+     * is enabled, as the dead code then depends on the budgets.
+     *
+     * @return dead statements of given IR, ordered by their indexes.
+     */
     @Override
     public Set<Stmt> analyze(IR ir) {
-        CFG<Stmt> cfg = ir.getResult(CFGBuilder.ID);
-        DataflowResult<Stmt, CPFact> constants = ir.getResult(ConstantPropagation.ID);
+        if (!ResultCache.isEnabled() || SolverBudget.isEnabled()) {
+            return detectDeadCode(ir);
+        }
+        byte[] cacheKey = ResultCache.newKey(ID, getOptions(), ir);
+        ByteBuffer cached = ResultCache.get(ID, cacheKey);
+        if (cached != null) {
+            int[] indexes = new int[cached.getInt()];
+            cached.asIntBuffer().get(indexes);
+            return new StmtIndexSet(ir.getStmts(), indexes);
+        }
+        StmtIndexSet deadCode = detectDeadCode(ir);
+        ByteBuffer entry = ByteBuffer.allocate(4 * (deadCode.indexes.length + 1));
+        entry.putInt(deadCode.indexes.length);
+        entry.asIntBuffer().put(deadCode.indexes);
+        ResultCache.put(ID, cacheKey, entry.array());
+        return deadCode;
+    }
+
+    /**
+     * Passes the dead statements of given IR to given action in order of
+     * their indexes, without collecting them, e.g., to write them to
+     * a report directly. The result of live variable analysis, and unless
+     * option "conditional" is set, the result of constant propagation must
+     * be in the IR, as for {@link #analyze(IR)}.
+     */
+    public void forEachDeadCode(IR ir, Consumer<? super Stmt> action) {
+        List<Stmt> stmts = ir.getStmts();
+        detectDeadCode(ir, null, index -> action.accept(stmts.get(index)));
+    }
+
+    private StmtIndexSet detectDeadCode(IR ir) {
+        return detectDeadCode(ir, null);
+    }
+
+    /**
+     * @param neverReturns tells the call sites whose callees never return
+     *                     normally, or null if unknown
+     */
+    StmtIndexSet detectDeadCode(IR ir, Predicate<Invoke> neverReturns) {
+        IntStream.Builder indexes = IntStream.builder();
+        detectDeadCode(ir, neverReturns, indexes);
+        return new StmtIndexSet(ir.getStmts(), indexes.build().toArray());
+    }
+
+    /**
+     * Passes the indexes of dead statements of given IR to given consumer
+     * in ascending order.
+     */
+    private void detectDeadCode(IR ir, Predicate<Invoke> neverReturns,
+                                IntConsumer consumer) {
         DataflowResult<Stmt, SetFact<Var>> liveVars = ir.getResult(LiveVariableAnalysis.ID);
+        List<Stmt> stmts = ir.getStmts();
+        BitSet reachable = findReachable(ir, neverReturns);
+        for (int i = 0; i < stmts.size(); ++i) {
+            if (!reachable.get(i) || isDeadAssignment(stmts.get(i), liveVars)) {
+                consumer.accept(i);
+            }
+        }
+    }
 
-        Set<Stmt> deadCode = new TreeSet<>(Comparator.comparing(Stmt::getIndex));
-        Set<Stmt> reachable = new HashSet<>();
-        Queue<Stmt> queue = new LinkedList<>();
-        queue.add(cfg.getEntry());
-
-        while (!queue.isEmpty()) {
-            Stmt stmt = queue.poll();
-            if (!reachable.add(stmt)) continue;
-
-            // Handle dead assignment
-            if (stmt instanceof AssignStmt<?, ?> assign) {
-                LValue lhs = assign.getLValue();
-                RValue rhs = assign.getRValue();
-                if (hasNoSideEffect(rhs) && lhs instanceof Var var) {
-                    SetFact<Var> out = liveVars.getOutFact(assign);
-                    if (!out.contains(var)) {
-                        deadCode.add(assign);
+    /**
+     * Traverses the CFG from the entry along the edges which are feasible
+     * according to the constants of the conditions of if and switch
+     * statements. Each statement is queued at most once. The result of
+     * constant propagation must be in the IR.
+     *
+     * @param neverReturns tells the call sites whose callees never return
+     *                     normally, from which only exceptional edges are
+     *                     followed, or null if unknown
+     * @return indexes of the reachable statements.
+     */
+    static BitSet computeReachable(IR ir, Predicate<Invoke> neverReturns) {
+        CFG<Stmt> cfg = ir.getResult(CFGBuilder.ID);
+        DataflowResult<Stmt, CPFact> constants = ir.getResult(ConstantPropagation.ID);
+        int numberOfStmts = ir.getStmts().size();
+        BitSet reachable = new BitSet(numberOfStmts);
+        Stmt[] queue = new Stmt[numberOfStmts];
+        int head = 0, tail = 0;
+        Stmt stmt = cfg.getEntry();
+        while (true) {
+            Value cond = null;
+            if (stmt instanceof If ifStmt) {
+                cond = ConstantPropagation.evaluate(
+                        ifStmt.getCondition(), constants.getInFact(ifStmt));
+            } else if (stmt instanceof SwitchStmt switchStmt) {
+                cond = ConstantPropagation.evaluate(
+                        switchStmt.getVar(), constants.getInFact(switchStmt));
+            }
+            boolean matchedCase = false;
+            if (cond != null && cond.isConstant() && stmt instanceof SwitchStmt) {
+                for (Edge<Stmt> edge : cfg.getOutEdgesOf(stmt)) {
+                    if (edge.getKind() == Edge.Kind.SWITCH_CASE
+                            && edge.getCaseValue() == cond.getConstant()) {
+                        matchedCase = true;
+                        break;
                     }
                 }
             }
+            boolean exceptionalOnly = neverReturns != null
+                    && stmt instanceof Invoke invoke && neverReturns.test(invoke);
+            for (Edge<Stmt> edge : cfg.getOutEdgesOf(stmt)) {
+                Stmt target = edge.getTarget();
+                if (!cfg.isExit(target) && !reachable.get(target.getIndex())
+                        && (exceptionalOnly
+                        ? edge.isExceptional()
+                        : isFeasible(edge, cond, matchedCase))) {
+                    reachable.set(target.getIndex());
+                    queue[tail++] = target;
+                }
+            }
+            if (head == tail) {
+                return reachable;
+            }
+            stmt = queue[head++];
+        }
+    }
 
-            // Handle If
-            if (stmt instanceof If ifStmt) {
-                CPFact in = constants.getInFact(ifStmt);
-                Value cond = ConstantPropagation.evaluate(ifStmt.getCondition(), in);
-
-                for (Edge<Stmt> edge : cfg.getOutEdgesOf(ifStmt)) {
-                    Edge.Kind kind = edge.getKind();
-                    boolean follow = false;
-
-                    if (!cond.isConstant()) {
-                        // NAC or Undef: conservatively follow all outgoing edges
-                        follow = true;
-                    } else {
-                        int val = cond.getConstant();
-                        follow = (kind == Edge.Kind.IF_TRUE && val != 0)
-                                || (kind == Edge.Kind.IF_FALSE && val == 0)
-                                || (kind != Edge.Kind.IF_TRUE && kind != Edge.Kind.IF_FALSE);
-                    }
+    /**
+     * @param cond        value of the condition of the source of the edge
+     *                    if it is an if or switch statement, otherwise null
+     * @param matchedCase whether a case of the switch matches the condition
+     * @return true if given edge may be taken.
+     */
+    private static boolean isFeasible(Edge<Stmt> edge, Value cond, boolean matchedCase) {
+        if (cond == null || !cond.isConstant()) {
+            // NAC or UNDEF: conservatively follow all outgoing edges
+            return true;
+        }
+        int value = cond.getConstant();
+        return switch (edge.getKind()) {
+            case IF_TRUE -> value != 0;
+            case IF_FALSE -> value == 0;
+            case SWITCH_CASE -> edge.getCaseValue() == value;
+            case SWITCH_DEFAULT -> !matchedCase;
+            default -> true;
+        };
+    }
 
-                    if (follow) {
-                        queue.add(edge.getTarget());
-                    }
-                }
-                continue;
+    /**
+     * Computes the reachable statements of given IR. If option "conditional"
+     * is set, they come from {@link ConditionalConstantPropagation}, which
+     * computes constants and unreachable branches in a single fixpoint and
+     * does not need the result of constant propagation. Otherwise, they are
+     * computed by {@link #computeReachable(IR, Predicate)}.
+     *
+     * @param neverReturns tells the call sites whose callees never return
+     *                     normally, or null if unknown
+     * @return indexes of the reachable statements.
+     */
+    BitSet findReachable(IR ir, Predicate<Invoke> neverReturns) {
+        if (!Boolean.TRUE.equals(getOptions().get("conditional"))) {
+            return computeReachable(ir, neverReturns);
+        }
+        ConditionalConstantPropagation.Result result = condProp.analyze(ir, neverReturns);
+        List<Stmt> stmts = ir.getStmts();
+        BitSet reachable = new BitSet(stmts.size());
+        for (int i = 0; i < stmts.size(); ++i) {
+            if (result.isReachable(stmts.get(i))) {
+                reachable.set(i);
             }
+        }
+        return reachable;
+    }
 
-            // Handle Switch
-            if (stmt instanceof SwitchStmt switchStmt) {
-                CPFact in = constants.getInFact(switchStmt);
-                Value cond = ConstantPropagation.evaluate(switchStmt.getVar(), in);
-                boolean matchedCase = false;
-
-                for (Edge<Stmt> edge : cfg.getOutEdgesOf(switchStmt)) {
-                    Edge.Kind kind = edge.getKind();
-                    if (!cond.isConstant()) {
-                        // NAC or Undef: follow all edges
-                        queue.add(edge.getTarget());
-                    } else {
-                        int val = cond.getConstant();
-                        if (kind == Edge.Kind.SWITCH_CASE && edge.getCaseValue() == val) {
-                            queue.add(edge.getTarget());
-                            matchedCase = true;
-                        } else if (kind != Edge.Kind.SWITCH_CASE && kind != Edge.Kind.SWITCH_DEFAULT) {
-                            queue.add(edge.getTarget());
-                        }
-                    }
+    /**
+     * Immutable set of statements of a method, represented by their indexes
+     * in ascending order. It iterates the statements in order of indexes.
+     */
+    static final class StmtIndexSet extends AbstractSet<Stmt> {
+
+        private final List<Stmt> stmts;
+
+        private final int[] indexes;
+
+        private StmtIndexSet(List<Stmt> stmts, int[] indexes) {
+            this.stmts = stmts;
+            this.indexes = indexes;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (o instanceof Stmt stmt) {
+                int index = stmt.getIndex();
+                return Arrays.binarySearch(indexes, index) >= 0
+                        && stmts.get(index) == stmt;
+            }
+            return false;
+        }
+
+        @Override
+        public Iterator<Stmt> iterator() {
+            return new Iterator<>() {
+
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < indexes.length;
                 }
 
-                // If no constant match and cond is constant, follow default
-                if (cond.isConstant() && !matchedCase) {
-                    for (Edge<Stmt> edge : cfg.getOutEdgesOf(switchStmt)) {
-                        if (edge.getKind() == Edge.Kind.SWITCH_DEFAULT) {
-                            queue.add(edge.getTarget());
-                        }
+                @Override
+                public Stmt next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
                     }
+                    return stmts.get(indexes[next++]);
                 }
-                continue;
-            }
+            };
+        }
 
-            // Default: enqueue all successors
-            for (Edge<Stmt> edge : cfg.getOutEdgesOf(stmt)) {
-                queue.add(edge.getTarget());
-            }
+        @Override
+        public int size() {
+            return indexes.length;
         }
+    }
 
-        // Merge: collect unreachable statements
-        for (Stmt stmt : cfg.getNodes()) {
-            if (!reachable.contains(stmt) && !cfg.isEntry(stmt) && !cfg.isExit(stmt)) {
-                deadCode.add(stmt);
+    /**
+     * @return true if given statement assigns a variable which is not
+     * live afterwards, and the assignment has no side effect.
+     */
+    private static boolean isDeadAssignment(
+            Stmt stmt, DataflowResult<Stmt, SetFact<Var>> liveVars) {
+        if (stmt instanceof AssignStmt<?, ?> assign) {
+            LValue lhs = assign.getLValue();
+            RValue rhs = assign.getRValue();
+            if (hasNoSideEffect(rhs) && lhs instanceof Var var) {
+                return !liveVars.getOutFact(assign).contains(var);
             }
         }
-
-        return deadCode;
+        return false;
     }
 
     /**
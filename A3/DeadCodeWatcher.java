@@ -0,0 +1,350 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import pascal.taie.analysis.dataflow.solver.ResultCache;
+import pascal.taie.analysis.graph.cfg.CFGBuilder;
+import pascal.taie.config.AnalysisConfig;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.stmt.Stmt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Long-running dead code detection which watches the class files under
+ * a directory, and re-analyzes only the methods whose IR has changed.
+ * <p>
+ * When class files are created, modified or deleted, their methods are
+ * loaded by the given {@link IRLoader}, and each method is compared with
+ * its previous version by the key of {@link ResultCache}, i.e., the hash
+ * of its IR and CFG. Constant propagation (unless option "conditional"
+ * is set), live variable analysis and dead code detection run only on
+ * the changed methods, and the changes of their dead code are passed to
+ * the listener. Dead statements of the two versions of a method are
+ * matched by their text, so code which is only moved is not reported.
+ * When a directory is deleted, its watch keys are cancelled, and the
+ * methods of its class files are removed like those of deleted files.
+ * <p>
+ * The events of a save, which often touches several class files, are
+ * collected for {@link #DEBOUNCE_MILLIS} before re-analyzing.
+ */
+public class DeadCodeWatcher implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(DeadCodeWatcher.class);
+
+    private static final long DEBOUNCE_MILLIS = 50;
+
+    /**
+     * Loads the IRs of the methods of a class file, e.g., by the frontend.
+     */
+    @FunctionalInterface
+    public interface IRLoader {
+        Collection<IR> load(Path classFile) throws IOException;
+    }
+
+    /**
+     * Change of the dead code of a method.
+     *
+     * @param method  signature of the method
+     * @param added   statements of the new version which became dead
+     * @param removed statements of the old version which are no longer dead,
+     *                or whose method has been removed
+     */
+    public record Change(String method, List<Stmt> added, List<Stmt> removed) {
+    }
+
+    private record MethodState(byte[] key, Set<Stmt> deadCode) {
+    }
+
+    private final Path root;
+
+    private final IRLoader loader;
+
+    private final Consumer<? super List<Change>> listener;
+
+    private final CFGBuilder cfgBuilder;
+
+    private final ConstantPropagation constantPropagation;
+
+    private final LiveVariableAnalysis liveVariables;
+
+    private final DeadCodeDetection deadCode;
+
+    private final WatchService watchService;
+
+    private final Map<WatchKey, Path> dirs = new HashMap<>();
+
+    /**
+     * Current states of the methods, by their signatures.
+     */
+    private final Map<String, MethodState> methods = new HashMap<>();
+
+    /**
+     * Signatures of the methods of each class file.
+     */
+    private final Map<Path, Set<String>> methodsOfFiles = new HashMap<>();
+
+    /**
+     * @param config options of {@link DeadCodeDetection}, and option
+     *               "exception" of the CFGs, see
+     *               {@link DeadCodeDetection#newCFGBuilder}
+     */
+    public DeadCodeWatcher(Path root, AnalysisConfig config, IRLoader loader,
+                           Consumer<? super List<Change>> listener) throws IOException {
+        this.root = root;
+        this.loader = loader;
+        this.listener = listener;
+        cfgBuilder = DeadCodeDetection.newCFGBuilder(config.getOptions());
+        constantPropagation = new ConstantPropagation(
+                new AnalysisConfig(ConstantPropagation.ID));
+        liveVariables = new LiveVariableAnalysis(
+                new AnalysisConfig(LiveVariableAnalysis.ID));
+        deadCode = new DeadCodeDetection(config);
+        watchService = root.getFileSystem().newWatchService();
+    }
+
+    /**
+     * Analyzes all class files under the root directory, and then
+     * re-analyzes the changed ones until the watcher is closed or
+     * the thread is interrupted.
+     */
+    public void run() throws IOException, InterruptedException {
+        List<Path> classFiles = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(path)) {
+                    register(path);
+                } else if (isClassFile(path)) {
+                    classFiles.add(path);
+                }
+            }
+        }
+        update(classFiles);
+        try {
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                do {
+                    collect(key, changed);
+                    key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                } while (key != null);
+                update(changed);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed by another thread
+        }
+    }
+
+    private void register(Path dir) throws IOException {
+        dirs.put(dir.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE), dir);
+    }
+
+    /**
+     * Cancels the watch keys of given deleted directory and its
+     * subdirectories, which may not be reported as deleted.
+     */
+    private void unregister(Path deleted) {
+        Iterator<Map.Entry<WatchKey, Path>> it = dirs.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<WatchKey, Path> entry = it.next();
+            if (entry.getValue().startsWith(deleted)) {
+                entry.getKey().cancel();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Collects the class files of the events of given key, registers
+     * the created directories, and unregisters the deleted ones.
+     * As a deleted path cannot tell whether it was a directory, the class
+     * files which were analyzed under it are collected as well.
+     */
+    private void collect(WatchKey key, Set<Path> changed) throws IOException {
+        Path dir = dirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(path)) {
+                try (Stream<Path> paths = Files.walk(path)) {
+                    for (Path p : (Iterable<Path>) paths::iterator) {
+                        if (Files.isDirectory(p)) {
+                            register(p);
+                        } else if (isClassFile(p)) {
+                            changed.add(p);
+                        }
+                    }
+                }
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                unregister(path);
+                for (Path classFile : methodsOfFiles.keySet()) {
+                    if (classFile.startsWith(path)) {
+                        changed.add(classFile);
+                    }
+                }
+            } else if (isClassFile(path)) {
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) {
+            dirs.remove(key);
+        }
+    }
+
+    private static boolean isClassFile(Path path) {
+        return path.getFileName().toString().endsWith(".class");
+    }
+
+    /**
+     * Re-analyzes the changed methods of given class files, which may
+     * have been deleted, and passes the changes of dead code to
+     * the listener if there are any. A class file which fails to load
+     * is skipped, and the results of its methods are left unchanged.
+     *
+     * @return the changes of dead code.
+     */
+    public List<Change> update(Collection<Path> classFiles) throws IOException {
+        long start = System.nanoTime();
+        List<Change> changes = new ArrayList<>();
+        int analyzed = 0, loaded = 0;
+        for (Path classFile : classFiles) {
+            Collection<IR> irs;
+            try {
+                irs = Files.exists(classFile) ? loader.load(classFile) : List.of();
+            } catch (IOException e) {
+                // e.g., the file is still being written when its event
+                // fires; its old states are kept, and the next event of
+                // the file retries it
+                logger.warn("Failed to load {}, keeping its previous results: {}",
+                        classFile, e.getMessage());
+                continue;
+            }
+            Set<String> oldMethods = methodsOfFiles.getOrDefault(classFile, Set.of());
+            Set<String> newMethods = new LinkedHashSet<>();
+            for (IR ir : irs) {
+                String method = ir.getMethod().getSignature();
+                newMethods.add(method);
+                ++loaded;
+                if (ir.getResult(CFGBuilder.ID) == null) {
+                    ir.storeResult(CFGBuilder.ID, cfgBuilder.analyze(ir));
+                }
+                byte[] key = ResultCache.newKey(DeadCodeDetection.ID, deadCode.getOptions(), ir);
+                MethodState old = methods.get(method);
+                if (old != null && Arrays.equals(old.key(), key)) {
+                    continue;
+                }
+                ++analyzed;
+                if (!Boolean.TRUE.equals(deadCode.getOptions().get("conditional"))) {
+                    ir.storeResult(ConstantPropagation.ID, constantPropagation.analyze(ir));
+                }
+                ir.storeResult(LiveVariableAnalysis.ID, liveVariables.analyze(ir));
+                Set<Stmt> dead = deadCode.analyze(ir);
+                methods.put(method, new MethodState(key, dead));
+                addChange(changes, method,
+                        old != null ? old.deadCode() : Set.of(), dead);
+            }
+            for (String method : oldMethods) {
+                if (!newMethods.contains(method)) {
+                    MethodState old = methods.remove(method);
+                    addChange(changes, method, old.deadCode(), Set.of());
+                }
+            }
+            if (newMethods.isEmpty()) {
+                methodsOfFiles.remove(classFile);
+            } else {
+                methodsOfFiles.put(classFile, newMethods);
+            }
+        }
+        logger.info("Re-analyzed {} of {} methods in {} ms, {} changed",
+                analyzed, loaded, (System.nanoTime() - start) / 1_000_000,
+                changes.size());
+        if (!changes.isEmpty()) {
+            listener.accept(changes);
+        }
+        return changes;
+    }
+
+    /**
+     * Adds the change between the old and the new dead code of a method,
+     * if any. Statements are matched by their text, counting duplicates.
+     */
+    private static void addChange(List<Change> changes, String method,
+                                  Set<Stmt> oldDead, Set<Stmt> newDead) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Stmt stmt : oldDead) {
+            counts.merge(stmt.toString(), 1, Integer::sum);
+        }
+        List<Stmt> added = new ArrayList<>();
+        for (Stmt stmt : newDead) {
+            if (counts.merge(stmt.toString(), -1, Integer::sum) < 0) {
+                added.add(stmt);
+            }
+        }
+        // now each count is the number of unmatched old statements
+        List<Stmt> removed = new ArrayList<>();
+        for (Stmt stmt : oldDead) {
+            String text = stmt.toString();
+            if (counts.get(text) > 0) {
+                counts.merge(text, -1, Integer::sum);
+                removed.add(stmt);
+            }
+        }
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            changes.add(new Change(method, added, removed));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.analysis.dataflow.solver.SolverBudget;
+import pascal.taie.ir.IR;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.AnalysisException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs method analyses over many methods in parallel.
+ * <p>
+ * Each method is handled by a single task, which runs the given analyses
+ * on the IR of the method one by one (so an analysis can read results of
+ * the analyses before it via {@link IR#getResult(String)}). Different
+ * methods share no data-flow state, so the results are exactly the same
+ * as those of running the analyses method by method; they are also
+ * collected in the order of the given methods.
+ * <p>
+ * A global budget of {@link SolverBudget} is shared by all methods, thus
+ * which methods exceed it depends on the order in which they are solved.
+ * When a global budget is set, the methods are analyzed one by one in
+ * the given order on the calling thread, to keep the results the same.
+ * (Time budgets make the results depend on timing in any case.)
+ * <p>
+ * The analyses themselves must not keep per-method state in their fields.
+ */
+public class ParallelMethodAnalysisDriver {
+
+    private static final Logger logger = LogManager.getLogger(ParallelMethodAnalysisDriver.class);
+
+    private final List<MethodAnalysis> analyses;
+
+    private final int parallelism;
+
+    /**
+     * @param analyses    analyses to run, in the order of their dependencies
+     * @param parallelism number of worker threads
+     */
+    public ParallelMethodAnalysisDriver(List<? extends MethodAnalysis> analyses,
+                                        int parallelism) {
+        this.analyses = List.copyOf(analyses);
+        this.parallelism = parallelism;
+    }
+
+    public ParallelMethodAnalysisDriver(List<? extends MethodAnalysis> analyses) {
+        this(analyses, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs the analyses on given methods, and stores the results in
+     * the IR of each method.
+     *
+     * @return map from analysis ID to the results of that analysis,
+     * which are ordered by the given methods.
+     */
+    public Map<String, Map<JMethod, Object>> run(List<JMethod> methods) {
+        // IRs are built lazily by the frontend, thus build them up front
+        // on the calling thread
+        List<IR> irs = new ArrayList<>(methods.size());
+        for (JMethod method : methods) {
+            irs.add(method.getIR());
+        }
+        // each task only writes its own row, which is published to this
+        // thread when its future completes
+        Object[][] results = new Object[irs.size()][analyses.size()];
+        List<Callable<Void>> tasks = new ArrayList<>(irs.size());
+        for (int i = 0; i < irs.size(); ++i) {
+            IR ir = irs.get(i);
+            Object[] row = results[i];
+            tasks.add(() -> {
+                for (int j = 0; j < analyses.size(); ++j) {
+                    MethodAnalysis analysis = analyses.get(j);
+                    Object result = analysis.analyze(ir);
+                    ir.storeResult(analysis.getId(), result);
+                    row[j] = result;
+                }
+                return null;
+            });
+        }
+        if (SolverBudget.hasGlobalBudget()) {
+            logger.warn("Global solver budget is set, analyzing {} methods sequentially",
+                    irs.size());
+            runSequentially(tasks);
+        } else {
+            runInParallel(tasks);
+        }
+        Map<String, Map<JMethod, Object>> resultMap = new LinkedHashMap<>();
+        for (int j = 0; j < analyses.size(); ++j) {
+            Map<JMethod, Object> methodResults = new LinkedHashMap<>();
+            for (int i = 0; i < irs.size(); ++i) {
+                methodResults.put(methods.get(i), results[i][j]);
+            }
+            resultMap.put(analyses.get(j).getId(),
+                    Collections.unmodifiableMap(methodResults));
+        }
+        return resultMap;
+    }
+
+    private void runInParallel(List<Callable<Void>> tasks) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException("Interrupted while analyzing methods", e);
+        } catch (ExecutionException e) {
+            throw new AnalysisException("Failed to analyze methods", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void runSequentially(List<Callable<Void>> tasks) {
+        for (Callable<Void> task : tasks) {
+            try {
+                task.call();
+            } catch (Exception e) {
+                throw new AnalysisException("Failed to analyze methods", e);
+            }
+        }
+    }
+}
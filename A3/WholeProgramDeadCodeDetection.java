@@ -0,0 +1,252 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.World;
+import pascal.taie.analysis.ParallelMethodAnalysisDriver;
+import pascal.taie.analysis.ProgramAnalysis;
+import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import pascal.taie.analysis.graph.callgraph.CallGraph;
+import pascal.taie.analysis.graph.callgraph.CallGraphBuilder;
+import pascal.taie.analysis.graph.cfg.CFGBuilder;
+import pascal.taie.config.AnalysisConfig;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.Return;
+import pascal.taie.ir.stmt.Stmt;
+import pascal.taie.language.classes.JClass;
+import pascal.taie.language.classes.JMethod;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Whole-program dead code detection on top of the call graph.
+ * <p>
+ * Methods which are unreachable in the call graph are reported as dead
+ * as a whole, and are not analyzed at all. Live variable analysis, and
+ * constant propagation unless option "conditional" is set, run only on
+ * the reachable methods, in parallel.
+ * Then the methods which never return normally are computed as a fixed
+ * point: a method never returns if none of its return statements is
+ * reachable, where the normal successors of call sites whose callees all
+ * never return are unreachable. Finally, the dead code of each reachable
+ * method is detected as by {@link DeadCodeDetection}, additionally taking
+ * such call sites into account.
+ * <p>
+ * Option "scope" selects the methods to report: "app" (default) for the
+ * methods of application classes, "all" for all methods. Option
+ * "conditional" is passed to {@link DeadCodeDetection}. Option "exception"
+ * selects the exceptional edges of the CFGs which are built here, see
+ * {@link DeadCodeDetection#newCFGBuilder}.
+ */
+public class WholeProgramDeadCodeDetection
+        extends ProgramAnalysis<WholeProgramDeadCodeDetection.Result> {
+
+    public static final String ID = "wp-deadcode";
+
+    private static final Logger logger = LogManager.getLogger(WholeProgramDeadCodeDetection.class);
+
+    private final boolean conditional;
+
+    private final DeadCodeDetection deadCode;
+
+    public WholeProgramDeadCodeDetection(AnalysisConfig config) {
+        super(config);
+        conditional = Boolean.TRUE.equals(getOptions().get("conditional"));
+        deadCode = conditional
+                ? new DeadCodeDetection(new AnalysisConfig(DeadCodeDetection.ID, "conditional", true))
+                : new DeadCodeDetection(new AnalysisConfig(DeadCodeDetection.ID));
+    }
+
+    @Override
+    public Result analyze() {
+        CallGraph<Invoke, JMethod> callGraph = World.get().getResult(CallGraphBuilder.ID);
+        Set<JMethod> reachable = new HashSet<>();
+        callGraph.reachableMethods().forEach(reachable::add);
+        Comparator<JMethod> bySignature = Comparator.comparing(JMethod::getSignature);
+        Stream<JClass> classes = "all".equals(getOptions().get("scope"))
+                ? World.get().getClassHierarchy().allClasses()
+                : World.get().getClassHierarchy().applicationClasses();
+        List<JMethod> methods = classes
+                .flatMap(c -> c.getDeclaredMethods().stream())
+                .filter(m -> !m.isAbstract() && !m.isNative())
+                .sorted(bySignature)
+                .toList();
+        List<JMethod> unreachable = methods.stream()
+                .filter(m -> !reachable.contains(m))
+                .toList();
+        List<JMethod> analyzed = methods.stream()
+                .filter(reachable::contains)
+                .toList();
+        analyzeMethods(analyzed);
+        Set<JMethod> neverReturning = computeNeverReturningMethods(callGraph, analyzed);
+        Predicate<Invoke> neverReturns = neverReturns(callGraph, neverReturning);
+        Map<JMethod, Set<Stmt>> deadCodes = new LinkedHashMap<>();
+        for (JMethod method : analyzed) {
+            deadCodes.put(method, deadCode.detectDeadCode(method.getIR(), neverReturns));
+        }
+        logger.info("{} methods: {} unreachable, {} analyzed, {} never return",
+                methods.size(), unreachable.size(), analyzed.size(), neverReturning.size());
+        return new Result(unreachable, neverReturning, deadCodes);
+    }
+
+    /**
+     * Runs live variable analysis, and constant propagation unless option
+     * "conditional" is set, on given methods, which store their results
+     * in the IRs.
+     */
+    private void analyzeMethods(List<JMethod> methods) {
+        CFGBuilder cfgBuilder = DeadCodeDetection.newCFGBuilder(getOptions());
+        for (JMethod method : methods) {
+            IR ir = method.getIR();
+            if (ir.getResult(CFGBuilder.ID) == null) {
+                ir.storeResult(CFGBuilder.ID, cfgBuilder.analyze(ir));
+            }
+        }
+        LiveVariableAnalysis liveVariables = new LiveVariableAnalysis(
+                new AnalysisConfig(LiveVariableAnalysis.ID));
+        new ParallelMethodAnalysisDriver(conditional
+                ? List.of(liveVariables)
+                : List.of(new ConstantPropagation(new AnalysisConfig(ConstantPropagation.ID)),
+                        liveVariables))
+                .run(methods);
+    }
+
+    /**
+     * Computes the methods which never return normally as the greatest
+     * fixed point, starting from all given methods: when a method is found
+     * to return, it is removed, and its callers are checked again. Unlike
+     * the least fixed point, this also finds recursion which never returns,
+     * e.g., {@code void f() { f(); }}.
+     */
+    private Set<JMethod> computeNeverReturningMethods(
+            CallGraph<Invoke, JMethod> callGraph, List<JMethod> methods) {
+        Set<JMethod> neverReturning = new HashSet<>(methods);
+        Predicate<Invoke> neverReturns = neverReturns(callGraph, neverReturning);
+        Queue<JMethod> workList = new ArrayDeque<>(methods);
+        Set<JMethod> inWorkList = new HashSet<>(methods);
+        while (!workList.isEmpty()) {
+            JMethod method = workList.poll();
+            inWorkList.remove(method);
+            if (!neverReturning.contains(method)
+                    || !returns(method.getIR(), neverReturns)) {
+                continue;
+            }
+            neverReturning.remove(method);
+            for (Invoke callSite : callGraph.getCallersOf(method)) {
+                JMethod caller = callGraph.getContainerOf(callSite);
+                if (neverReturning.contains(caller) && inWorkList.add(caller)) {
+                    workList.add(caller);
+                }
+            }
+        }
+        return neverReturning;
+    }
+
+    /**
+     * @return predicate telling the call sites whose callees are all
+     * in given set, which is read when the predicate is tested.
+     */
+    private static Predicate<Invoke> neverReturns(
+            CallGraph<Invoke, JMethod> callGraph, Set<JMethod> neverReturning) {
+        return callSite -> {
+            Set<JMethod> callees = callGraph.getCalleesOf(callSite);
+            return !callees.isEmpty() && neverReturning.containsAll(callees);
+        };
+    }
+
+    /**
+     * @return true if a return statement of given IR is reachable.
+     */
+    private boolean returns(IR ir, Predicate<Invoke> neverReturns) {
+        BitSet reachable = deadCode.findReachable(ir, neverReturns);
+        List<Stmt> stmts = ir.getStmts();
+        for (int i = reachable.nextSetBit(0); i >= 0; i = reachable.nextSetBit(i + 1)) {
+            if (stmts.get(i) instanceof Return) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Result {
+
+        private final List<JMethod> unreachableMethods;
+
+        private final Set<JMethod> neverReturningMethods;
+
+        private final Map<JMethod, Set<Stmt>> deadCodes;
+
+        private Result(List<JMethod> unreachableMethods,
+                       Set<JMethod> neverReturningMethods,
+                       Map<JMethod, Set<Stmt>> deadCodes) {
+            this.unreachableMethods = unreachableMethods;
+            this.neverReturningMethods = Collections.unmodifiableSet(neverReturningMethods);
+            this.deadCodes = Collections.unmodifiableMap(deadCodes);
+        }
+
+        /**
+         * @return methods which are unreachable from the entry methods,
+         * ordered by signature.
+         */
+        public List<JMethod> getUnreachableMethods() {
+            return unreachableMethods;
+        }
+
+        /**
+         * @return reachable methods which never return normally.
+         */
+        public Set<JMethod> getNeverReturningMethods() {
+            return neverReturningMethods;
+        }
+
+        /**
+         * @return dead code of given reachable method, or null if
+         * the method has not been analyzed.
+         */
+        public Set<Stmt> getDeadCode(JMethod method) {
+            return deadCodes.get(method);
+        }
+
+        /**
+         * @return map from each reachable method to its dead code,
+         * ordered by signature.
+         */
+        public Map<JMethod, Set<Stmt>> getDeadCodes() {
+            return deadCodes;
+        }
+    }
+}
@@ -17,6 +17,18 @@ class CHABuilder implements CGBuilder<Invoke, JMethod> {
 
     private ClassHierarchy hierarchy;
 
+    private final DispatchTable dispatchTable = new DispatchTable();
+
+    /**
+     * Targets of the call sites resolved so far. Call sites of the same
+     * method reference and call kind share the same immutable set.
+     */
+    private final Map<ResolutionKey, Set<JMethod>> resolved = new HashMap<>();
+
+    private record ResolutionKey(JClass declaringClass, Subsignature subsignature,
+                                 CallKind kind) {
+    }
+
     @Override
     public CallGraph<Invoke, JMethod> build() {
         hierarchy = World.get().getClassHierarchy();
@@ -54,13 +66,21 @@ class CHABuilder implements CGBuilder<Invoke, JMethod> {
      */
     private Set<JMethod> resolve(Invoke callSite) {
         MethodRef methodRef = callSite.getMethodRef();
-        JClass cls = methodRef.getDeclaringClass();
-        Subsignature subsignature = methodRef.getSubsignature();
+        ResolutionKey key = new ResolutionKey(methodRef.getDeclaringClass(),
+                methodRef.getSubsignature(), CallGraphs.getCallKind(callSite));
+        return resolved.computeIfAbsent(key, this::resolveTargets);
+    }
+
+    private Set<JMethod> resolveTargets(ResolutionKey key) {
+        JClass cls = key.declaringClass();
+        Subsignature subsignature = key.subsignature();
         Set<JMethod> T = new HashSet<>();
-        CallKind kind = CallGraphs.getCallKind(callSite);
-        switch (kind) {
+        switch (key.kind()) {
             case STATIC, SPECIAL:
-                T.add(dispatch(cls, subsignature));
+                JMethod method = dispatchTable.dispatch(cls, subsignature);
+                if (method != null) {
+                    T.add(method);
+                }
                 break;
             case VIRTUAL, INTERFACE:
                 Set<JClass> seen = new HashSet<>();
@@ -69,7 +89,7 @@ class CHABuilder implements CGBuilder<Invoke, JMethod> {
                 seen.add(cls);
                 while (!classQueue.isEmpty()) {
                     JClass current = classQueue.poll();
-                    JMethod target = dispatch(current, subsignature);
+                    JMethod target = dispatchTable.dispatch(current, subsignature);
                     if (target != null && !target.isAbstract()) {
                         T.add(target);
                     }
@@ -91,20 +111,6 @@ class CHABuilder implements CGBuilder<Invoke, JMethod> {
                 }
                 break;
         }
-        return T;
-    }
-
-    private JMethod dispatch(JClass jclass, Subsignature subsignature) {
-        JMethod sig = jclass.getDeclaredMethod(subsignature);
-        if (sig != null) {
-            return sig;
-        } else {
-            JClass sup = jclass.getSuperClass();
-            if (sup != null && !jclass.isInterface()) {
-                return dispatch(sup, subsignature);
-            } else {
-                return null;
-            }
-        }
+        return Set.copyOf(T);
     }
 }
\ No newline at end of file
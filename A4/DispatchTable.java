@@ -0,0 +1,80 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.graph.callgraph;
+
+import pascal.taie.language.classes.JClass;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.classes.Subsignature;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoized dispatch of {@link CHABuilder}. Each class has a dispatch table
+ * from subsignatures to the methods they dispatch to, which is filled
+ * lazily, so that the superclasses are walked at most once for each pair
+ * of class and subsignature. The tables can be shared by threads.
+ * <p>
+ * The lookup follows the superclasses only and may return abstract
+ * methods, which {@link CHABuilder} filters out when resolving call sites.
+ * Thus this is not a replacement of the dispatch of the class hierarchy,
+ * which also skips abstract methods and finds default methods of
+ * superinterfaces.
+ */
+class DispatchTable {
+
+    private final Map<JClass, Map<Subsignature, Optional<JMethod>>> tables =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Looks up the method of given subsignature in given class and
+     * its superclasses.
+     *
+     * @return the dispatched method, or null if there is no such method.
+     */
+    JMethod dispatch(JClass jclass, Subsignature subsignature) {
+        Map<Subsignature, Optional<JMethod>> table = tables.computeIfAbsent(
+                jclass, c -> new ConcurrentHashMap<>());
+        Optional<JMethod> target = table.get(subsignature);
+        if (target == null) {
+            // not computeIfAbsent(), as the lookup updates the tables
+            // of the superclasses
+            target = Optional.ofNullable(lookup(jclass, subsignature));
+            table.putIfAbsent(subsignature, target);
+        }
+        return target.orElse(null);
+    }
+
+    private JMethod lookup(JClass jclass, Subsignature subsignature) {
+        JMethod method = jclass.getDeclaredMethod(subsignature);
+        if (method != null) {
+            return method;
+        }
+        JClass superClass = jclass.getSuperClass();
+        if (superClass != null && !jclass.isInterface()) {
+            return dispatch(superClass, subsignature);
+        }
+        return null;
+    }
+}
@@ -53,7 +53,8 @@ import java.util.Set;
  * Implementation of interprocedural constant propagation for int values.
  */
 public class InterConstantPropagation extends
-        AbstractInterDataflowAnalysis<JMethod, Stmt, CPFact> {
+        AbstractInterDataflowAnalysis<JMethod, Stmt, CPFact>
+        implements SaturatingInterAnalysis<Stmt, CPFact> {
 
     public static final String ID = "inter-constprop";
 
@@ -75,6 +76,12 @@ public class InterConstantPropagation extends
         return cp.newBoundaryFact(ir.getResult(CFGBuilder.ID));
     }
 
+    @Override
+    public CPFact newSaturatedFact(Stmt node) {
+        IR ir = icfg.getContainingMethodOf(node).getIR();
+        return cp.newSaturatedFact(ir.getResult(CFGBuilder.ID));
+    }
+
     @Override
     public CPFact newInitialFact() {
         return cp.newInitialFact();
@@ -123,7 +130,7 @@ public class InterConstantPropagation extends
         // TODO - finish me
         Invoke source = (Invoke) edge.getSource();
         InvokeExp RHS = source.getRValue();
-        CPFact out = new CPFact();
+        CPFact out = cp.newInitialFact();
         JMethod method = edge.getCallee();
         if (method != null) {
             IR methodIR = method.getIR();
@@ -143,7 +150,7 @@ public class InterConstantPropagation extends
     @Override
     protected CPFact transferReturnEdge(ReturnEdge<Stmt> edge, CPFact returnOut) {
         // TODO - finish me
-        CPFact out = new CPFact();
+        CPFact out = cp.newInitialFact();
         Invoke callSite = (Invoke) edge.getCallSite();
         Var LHS = callSite.getLValue();
         if (LHS != null) {
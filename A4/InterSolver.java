@@ -22,13 +22,21 @@
 
     package pascal.taie.analysis.dataflow.inter;
 
+    import pascal.taie.analysis.Analysis;
     import pascal.taie.analysis.dataflow.fact.DataflowResult;
+    import pascal.taie.analysis.dataflow.solver.SolverBudget;
+    import pascal.taie.analysis.dataflow.solver.SolverMetrics;
     import pascal.taie.analysis.graph.callgraph.Edge;
     import pascal.taie.analysis.graph.icfg.ICFG;
     import pascal.taie.analysis.graph.icfg.ICFGEdge;
     import pascal.taie.util.collection.SetQueue;
 
+    import java.util.ArrayList;
+    import java.util.HashMap;
+    import java.util.HashSet;
     import java.util.LinkedList;
+    import java.util.List;
+    import java.util.Map;
     import java.util.Queue;
     import java.util.Set;
     import java.util.stream.Collectors;
@@ -48,6 +56,27 @@
 
         private Queue<Node> workList;
 
+        /**
+         * Per-method metrics, or null if {@link SolverMetrics} is disabled.
+         */
+        private Map<Method, SolverMetrics.Record> metrics;
+
+        /**
+         * Per-method budgets, or null if {@link SolverBudget} is disabled
+         * or the analysis is not a {@link SaturatingInterAnalysis}.
+         */
+        private Map<Method, SolverBudget> budgets;
+
+        /**
+         * Methods which have been given up after exceeding their budgets.
+         */
+        private Set<Method> saturated;
+
+        /**
+         * Nodes of each method, computed on the first saturation.
+         */
+        private Map<Method, List<Node>> nodesOfMethods;
+
         InterSolver(InterDataflowAnalysis<Node, Fact> analysis,
                     ICFG<Method, Node> icfg) {
             this.analysis = analysis;
@@ -56,8 +85,15 @@
 
         DataflowResult<Node, Fact> solve() {
             result = new DataflowResult<>();
+            metrics = SolverMetrics.isEnabled() ? new HashMap<>() : null;
+            budgets = SolverBudget.isEnabled() && analysis instanceof SaturatingInterAnalysis
+                    ? new HashMap<>() : null;
+            saturated = new HashSet<>();
             initialize();
             doSolve();
+            if (metrics != null) {
+                metrics.values().forEach(SolverMetrics::finish);
+            }
             return result;
         }
 
@@ -78,15 +114,92 @@
             workList = new LinkedList<>(icfg.getNodes());
             while (!workList.isEmpty()) {
                 Node node = workList.poll();
+                SolverBudget budget = null;
+                if (budgets != null) {
+                    Method method = icfg.getContainingMethodOf(node);
+                    if (saturated.contains(method)) {
+                        continue;
+                    }
+                    budget = budgets.computeIfAbsent(method,
+                            m -> SolverBudget.newInterleavedBudget());
+                    if (!budget.visit()) {
+                        budget.logSaturation(getClass().getSimpleName(),
+                                getAnalysisId(), method.toString());
+                        saturate(method, node);
+                        continue;
+                    }
+                }
+                SolverMetrics.Record record = metrics != null ? getRecord(node) : null;
+                long start = record != null || budget != null ? System.nanoTime() : 0;
                 for (ICFGEdge<Node> predEdge : icfg.getInEdgesOf(node)) {
                     analysis.meetInto(analysis.transferEdge(predEdge, result.getOutFact(predEdge.getSource())), result.getInFact(node));
+                    if (record != null) {
+                        record.meet();
+                    }
                 }
                 Fact in = result.getInFact(node);
                 Fact out = result.getOutFact(node);
-                if (analysis.transferNode(node, in, out)) {
+                boolean changed = analysis.transferNode(node, in, out);
+                if (changed) {
                     result.setOutFact(node, out);
                     workList.addAll(icfg.getSuccsOf(node));
                 }
+                if (record != null) {
+                    record.visit();
+                    record.transfer(changed, out);
+                    record.addTime(System.nanoTime() - start);
+                }
+                if (budget != null) {
+                    budget.addTime(System.nanoTime() - start);
+                }
+            }
+        }
+
+        /**
+         * Gives up given method: the IN and OUT facts of all its nodes are set
+         * to the saturated fact of the analysis, which is shared by the nodes,
+         * and the nodes are not visited anymore. Each node is transferred once
+         * on the saturated fact, for analyses which propagate facts besides
+         * the ICFG edges (e.g., from field stores to loads), and the successors
+         * in other methods are added to the work-list.
+         */
+        private void saturate(Method method, Node node) {
+            saturated.add(method);
+            Fact fact = ((SaturatingInterAnalysis<Node, Fact>) analysis).newSaturatedFact(node);
+            List<Node> nodes = getNodesOf(method);
+            for (Node n : nodes) {
+                result.setInFact(n, fact);
+                result.setOutFact(n, fact);
             }
+            for (Node n : nodes) {
+                analysis.transferNode(n, fact, analysis.newInitialFact());
+                for (Node succ : icfg.getSuccsOf(n)) {
+                    if (!saturated.contains(icfg.getContainingMethodOf(succ))) {
+                        workList.add(succ);
+                    }
+                }
+            }
+        }
+
+        private List<Node> getNodesOf(Method method) {
+            if (nodesOfMethods == null) {
+                nodesOfMethods = new HashMap<>();
+                for (Node node : icfg.getNodes()) {
+                    nodesOfMethods.computeIfAbsent(icfg.getContainingMethodOf(node),
+                            m -> new ArrayList<>()).add(node);
+                }
+            }
+            return nodesOfMethods.get(method);
+        }
+
+        private SolverMetrics.Record getRecord(Node node) {
+            return metrics.computeIfAbsent(icfg.getContainingMethodOf(node),
+                    method -> SolverMetrics.newRecord(getClass().getSimpleName(),
+                            getAnalysisId(), method.toString()));
+        }
+
+        private String getAnalysisId() {
+            return analysis instanceof Analysis a
+                    ? a.getId() : analysis.getClass().getSimpleName();
         }
     }
@@ -36,7 +36,6 @@ import pascal.taie.language.type.Type;
 import pascal.taie.util.AnalysisException;
 
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 public class ConstantPropagation extends
@@ -76,12 +75,16 @@ public class ConstantPropagation extends
 
     @Override
     public void meetInto(CPFact fact, CPFact target) {
-        // TODO - finish me
-        for (Map.Entry<Var, Value> entry: fact.entries().toList()) {
-            Var var = entry.getKey();
-            Value value = entry.getValue();
-            Value targetValue = target.get(var);
-            target.update(var, meetValue(value, targetValue));
+        for (Var var : fact.keySet()) {
+            long factCode = getCode(fact, var);
+            long targetCode = getCode(target, var);
+            long code = EncodedValues.meet(factCode, targetCode);
+            if (code != targetCode) {
+                // the meet is one of the operands or NAC, thus
+                // the Value of fact or the shared NAC is reused
+                target.update(var, code == factCode
+                        ? fact.get(var) : EncodedValues.decode(code));
+            }
         }
     }
 
@@ -89,49 +92,48 @@ public class ConstantPropagation extends
      * Meets two Values.
      */
     public Value meetValue(Value v1, Value v2) {
-        // TODO - finish me
-        // NAC meet v
-        if (v1.isNAC() || v2.isNAC()) {
-            return Value.getNAC();
-        }
-        // v meet c
-        if (v1.isConstant() && v2.isConstant()) {
-            // v meet c || c meet c
-            if (!v1.equals(v2)) {
-                return Value.getNAC();
-            } else {
-                return Value.makeConstant(v1.getConstant());
-            }
-        }
-        // UNDEF meet v
-        if (v1.isConstant() && v2.isUndef()) {
-            return Value.makeConstant(v1.getConstant());
-        }
-        if (v1.isUndef() && v2.isConstant()) {
-            return Value.makeConstant(v2.getConstant());
-        }
-        if (v1.isUndef() && v2.isUndef()) {
-            return Value.getUndef();
-        }
-        // Other
-        return Value.getNAC();
+        long code1 = EncodedValues.encode(v1);
+        long code = EncodedValues.meet(code1, EncodedValues.encode(v2));
+        return code == code1 ? v1 : code == EncodedValues.NAC
+                ? Value.getNAC() : v2;
     }
 
     @Override
     public boolean transferNode(Stmt stmt, CPFact in, CPFact out) {
-        // TODO - finish me
-        CPFact newOut = in.copy();
+        // OUT = (IN - def) + (def -> evaluated), without copying IN
+        Var def = null;
+        long evaluated = EncodedValues.UNDEF;
         if (stmt instanceof DefinitionStmt<?,?> defStmt) {
             LValue lvalue = defStmt.getLValue();
             RValue rvalue = defStmt.getRValue();
             if (lvalue instanceof Var var) {
                 if (canHoldInt(var)) {
-                    Value evaluated = evaluate(rvalue, in);
-                    newOut.update(var, evaluated);
+                    def = var;
+                    evaluated = evaluateCode(rvalue, in);
                 }
             }
         }
-        return out.copyFrom(newOut);
+        boolean changed = false;
+        for (Var var : in.keySet()) {
+            if (!var.equals(def) && getCode(out, var) != getCode(in, var)) {
+                out.update(var, in.get(var));
+                changed = true;
+            }
+        }
+        if (def != null && evaluated != EncodedValues.UNDEF
+                && getCode(out, def) != evaluated) {
+            out.update(def, EncodedValues.decode(evaluated));
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * @return the encoded value of given variable, which reads the
+     * {@link Value} stored in the fact and does not allocate.
+     */
+    private static long getCode(CPFact fact, Var var) {
+        return EncodedValues.encode(fact.get(var));
     }
 
     /**
@@ -160,84 +162,81 @@ public class ConstantPropagation extends
      * @return the resulting {@link Value}
      */
     public static Value evaluate(Exp exp, CPFact in) {
-        // TODO - finish me
-        if (exp instanceof Var) {
-            return in.get((Var) exp);
+        return EncodedValues.decode(evaluateCode(exp, in));
+    }
+
+    /**
+     * Evaluates given expression on encoded values (see {@link EncodedValues}),
+     * which does not allocate {@link Value}s for intermediate results.
+     *
+     * @return the encoded value of the expression
+     */
+    static long evaluateCode(Exp exp, CPFact in) {
+        if (exp instanceof Var var) {
+            return getCode(in, var);
         }
-        if (exp instanceof IntLiteral) {
-            return Value.makeConstant(((IntLiteral) exp).getValue());
+        if (exp instanceof IntLiteral intLiteral) {
+            return EncodedValues.makeConstant(intLiteral.getValue());
         }
-        if (exp instanceof BinaryExp) {
+        if (exp instanceof BinaryExp binaryExp) {
+            long leftVal = evaluateCode(binaryExp.getOperand1(), in);
+            long rightVal = evaluateCode(binaryExp.getOperand2(), in);
             if (exp instanceof ArithmeticExp arithmeticExp) {
-                Value leftVal = evaluate(arithmeticExp.getOperand1(), in);
-                Value rightVal = evaluate(arithmeticExp.getOperand2(), in);
-                if (rightVal.isConstant() && rightVal.getConstant() == 0 &&
-                        (arithmeticExp.getOperator() == ArithmeticExp.Op.DIV || arithmeticExp.getOperator() == ArithmeticExp.Op.REM)) {
-                    return Value.getUndef();
+                ArithmeticExp.Op op = arithmeticExp.getOperator();
+                if (EncodedValues.isConstant(rightVal)
+                        && EncodedValues.getConstant(rightVal) == 0
+                        && (op == ArithmeticExp.Op.DIV || op == ArithmeticExp.Op.REM)) {
+                    return EncodedValues.UNDEF;
                 }
-                if (leftVal.isConstant() && rightVal.isConstant()) {
-                    int left = leftVal.getConstant();
-                    int right = rightVal.getConstant();
+            }
+            if (EncodedValues.isConstant(leftVal) && EncodedValues.isConstant(rightVal)) {
+                int left = EncodedValues.getConstant(leftVal);
+                int right = EncodedValues.getConstant(rightVal);
+                if (exp instanceof ArithmeticExp arithmeticExp) {
                     return switch (arithmeticExp.getOperator()) {
-                        case ADD -> Value.makeConstant(left + right);
-                        case SUB -> Value.makeConstant(left - right);
-                        case MUL -> Value.makeConstant(left * right);
-                        case DIV -> Value.makeConstant(left / right);
-                        case REM -> Value.makeConstant(left % right);
-                        default -> Value.getUndef();
+                        case ADD -> EncodedValues.makeConstant(left + right);
+                        case SUB -> EncodedValues.makeConstant(left - right);
+                        case MUL -> EncodedValues.makeConstant(left * right);
+                        case DIV -> EncodedValues.makeConstant(left / right);
+                        case REM -> EncodedValues.makeConstant(left % right);
+                        default -> EncodedValues.UNDEF;
                     };
                 }
-                return leftVal.isNAC() || rightVal.isNAC() ? Value.getNAC() : Value.getUndef();
-            }
-            if (exp instanceof ConditionExp conditionExp) {
-                Value leftVal = evaluate(conditionExp.getOperand1(), in);
-                Value rightVal = evaluate(conditionExp.getOperand2(), in);
-                if (leftVal.isConstant() && rightVal.isConstant()) {
-                    int left = leftVal.getConstant();
-                    int right = rightVal.getConstant();
+                if (exp instanceof ConditionExp conditionExp) {
                     return switch (conditionExp.getOperator()) {
-                        case EQ -> Value.makeConstant(left == right ? 1 : 0);
-                        case NE -> Value.makeConstant(left != right ? 1 : 0);
-                        case LT -> Value.makeConstant(left < right ? 1 : 0);
-                        case GT -> Value.makeConstant(left > right ? 1 : 0);
-                        case LE -> Value.makeConstant(left <= right ? 1 : 0);
-                        case GE -> Value.makeConstant(left >= right ? 1 : 0);
-                        default -> Value.getUndef();
+                        case EQ -> EncodedValues.makeConstant(left == right ? 1 : 0);
+                        case NE -> EncodedValues.makeConstant(left != right ? 1 : 0);
+                        case LT -> EncodedValues.makeConstant(left < right ? 1 : 0);
+                        case GT -> EncodedValues.makeConstant(left > right ? 1 : 0);
+                        case LE -> EncodedValues.makeConstant(left <= right ? 1 : 0);
+                        case GE -> EncodedValues.makeConstant(left >= right ? 1 : 0);
+                        default -> EncodedValues.UNDEF;
                     };
                 }
-                return leftVal.isNAC() || rightVal.isNAC() ? Value.getNAC() : Value.getUndef();
-            }
-            if (exp instanceof ShiftExp shiftExp) {
-                Value leftVal = evaluate(shiftExp.getOperand1(), in);
-                Value rightVal = evaluate(shiftExp.getOperand2(), in);
-                if (leftVal.isConstant() && rightVal.isConstant()) {
-                    int left = leftVal.getConstant();
-                    int right = rightVal.getConstant();
+                if (exp instanceof ShiftExp shiftExp) {
                     return switch (shiftExp.getOperator()) {
-                        case SHL -> Value.makeConstant(left << right);
-                        case SHR -> Value.makeConstant(left >> right);
-                        case USHR -> Value.makeConstant(left >>> right);
-                        default -> Value.getUndef();
+                        case SHL -> EncodedValues.makeConstant(left << right);
+                        case SHR -> EncodedValues.makeConstant(left >> right);
+                        case USHR -> EncodedValues.makeConstant(left >>> right);
+                        default -> EncodedValues.UNDEF;
                     };
                 }
-                return leftVal.isNAC() || rightVal.isNAC() ? Value.getNAC() : Value.getUndef();
-            }
-            if (exp instanceof BitwiseExp bitwiseExp) {
-                Value leftVal = evaluate(bitwiseExp.getOperand1(), in);
-                Value rightVal = evaluate(bitwiseExp.getOperand2(), in);
-                if (leftVal.isConstant() && rightVal.isConstant()) {
-                    int left = leftVal.getConstant();
-                    int right = rightVal.getConstant();
+                if (exp instanceof BitwiseExp bitwiseExp) {
                     return switch (bitwiseExp.getOperator()) {
-                        case AND -> Value.makeConstant(left & right);
-                        case OR -> Value.makeConstant(left | right);
-                        case XOR -> Value.makeConstant(left ^ right);
-                        default -> Value.getUndef();
+                        case AND -> EncodedValues.makeConstant(left & right);
+                        case OR -> EncodedValues.makeConstant(left | right);
+                        case XOR -> EncodedValues.makeConstant(left ^ right);
+                        default -> EncodedValues.UNDEF;
                     };
                 }
-                return leftVal.isNAC() || rightVal.isNAC() ? Value.getNAC() : Value.getUndef();
+                return EncodedValues.NAC;
+            }
+            if (exp instanceof ArithmeticExp || exp instanceof ConditionExp
+                    || exp instanceof ShiftExp || exp instanceof BitwiseExp) {
+                return leftVal == EncodedValues.NAC || rightVal == EncodedValues.NAC
+                        ? EncodedValues.NAC : EncodedValues.UNDEF;
             }
         }
-        return Value.getNAC();
+        return EncodedValues.NAC;
     }
 }
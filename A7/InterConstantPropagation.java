@@ -51,7 +51,8 @@ import static pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagati
  * Implementation of interprocedural constant propagation for int values.
  */
 public class InterConstantPropagation extends
-        AbstractInterDataflowAnalysis<JMethod, Stmt, CPFact> {
+        AbstractInterDataflowAnalysis<JMethod, Stmt, CPFact>
+        implements SaturatingInterAnalysis<Stmt, CPFact> {
 
     public static final String ID = "inter-constprop";
 
@@ -116,6 +117,17 @@ public class InterConstantPropagation extends
         return cp.newBoundaryFact(ir.getResult(CFGBuilder.ID));
     }
 
+    @Override
+    public CPFact newSaturatedFact(Stmt node) {
+        CPFact saturatedFact = cp.newInitialFact();
+        for (Var var : icfg.getContainingMethodOf(node).getIR().getVars()) {
+            if (canHoldInt(var)) {
+                saturatedFact.update(var, Value.getNAC());
+            }
+        }
+        return saturatedFact;
+    }
+
     @Override
     public CPFact newInitialFact() {
         return cp.newInitialFact();
@@ -0,0 +1,42 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.inter;
+
+/**
+ * Inter-procedural data-flow analysis which can give up on a method soundly.
+ * When the nodes of a method exceed their
+ * {@link pascal.taie.analysis.dataflow.solver.SolverBudget},
+ * the solver stops visiting them and uses the saturated fact of the
+ * analysis as both IN and OUT fact of every node of the method.
+ *
+ * @param <Node> type of ICFG nodes
+ * @param <Fact> type of data-flow facts
+ */
+public interface SaturatingInterAnalysis<Node, Fact> extends InterDataflowAnalysis<Node, Fact> {
+
+    /**
+     * @return a fact which over-approximates every fact that may hold
+     * at any node of the method containing given node.
+     */
+    Fact newSaturatedFact(Node node);
+}
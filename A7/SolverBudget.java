@@ -0,0 +1,219 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.solver;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Budget of node visits and wall time for solving a method.
+ * <p>
+ * Budgets are disabled by default, and are set by system properties:
+ * <ul>
+ *     <li>"taie.solver.budget.visits": node visits per method</li>
+ *     <li>"taie.solver.budget.time": milliseconds per method</li>
+ *     <li>"taie.solver.budget.global.visits": node visits of all methods</li>
+ *     <li>"taie.solver.budget.global.time": milliseconds since the first
+ *     solve of the run</li>
+ * </ul>
+ * A method exceeding its budget is given up, i.e., its facts are
+ * saturated by the analysis, see
+ * {@link pascal.taie.analysis.dataflow.analysis.SaturatingAnalysis}.
+ * Once the global budget is exceeded, all remaining methods are given up
+ * at their first visit, so that the run finishes in predictable time.
+ * Thus, which methods are given up under a global budget depends on
+ * the order in which the methods are solved.
+ */
+public final class SolverBudget {
+
+    private static final Logger logger = LogManager.getLogger(SolverBudget.class);
+
+    private static final long METHOD_VISITS = Long.getLong("taie.solver.budget.visits", 0);
+
+    private static final long METHOD_TIME = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("taie.solver.budget.time", 0));
+
+    private static final long GLOBAL_VISITS = Long.getLong("taie.solver.budget.global.visits", 0);
+
+    private static final long GLOBAL_TIME = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("taie.solver.budget.global.time", 0));
+
+    private static final boolean ENABLED = METHOD_VISITS > 0 || METHOD_TIME > 0
+            || GLOBAL_VISITS > 0 || GLOBAL_TIME > 0;
+
+    /**
+     * Number of visits between two checks of the clock.
+     */
+    private static final int TIME_CHECK_INTERVAL = 64;
+
+    private static final long globalStart = System.nanoTime();
+
+    private static final AtomicLong globalVisits = new AtomicLong();
+
+    /**
+     * Budget of the intra-procedural solve running on current thread.
+     */
+    private static final ThreadLocal<SolverBudget> current = new ThreadLocal<>();
+
+    private final long start = System.nanoTime();
+
+    /**
+     * Whether the work on the method is interleaved with other methods,
+     * in which case its time is accumulated by {@link #addTime(long)}.
+     */
+    private final boolean interleaved;
+
+    private long time;
+
+    private long visits;
+
+    private SolverBudget(boolean interleaved) {
+        this.interleaved = interleaved;
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @return true if a global budget is set, i.e., the budgets of
+     * different methods are not independent.
+     */
+    public static boolean hasGlobalBudget() {
+        return GLOBAL_VISITS > 0 || GLOBAL_TIME > 0;
+    }
+
+    /**
+     * @return a new budget for solving a method,
+     * or null if budgets are disabled.
+     */
+    public static SolverBudget newBudget() {
+        return ENABLED ? new SolverBudget(false) : null;
+    }
+
+    /**
+     * @return a new budget for a method whose solve is interleaved with
+     * other methods, e.g., by an inter-procedural solver, or null if
+     * budgets are disabled. The time spent on the method must be added
+     * by {@link #addTime(long)}.
+     */
+    public static SolverBudget newInterleavedBudget() {
+        return ENABLED ? new SolverBudget(true) : null;
+    }
+
+    public void addTime(long nanos) {
+        time += nanos;
+    }
+
+    /**
+     * Counts a visit of a node.
+     *
+     * @return false if this budget, or the global budget, is exceeded.
+     */
+    public boolean visit() {
+        ++visits;
+        if (METHOD_VISITS > 0 && visits > METHOD_VISITS) {
+            return false;
+        }
+        if (GLOBAL_VISITS > 0 && globalVisits.incrementAndGet() > GLOBAL_VISITS) {
+            return false;
+        }
+        if ((METHOD_TIME > 0 || GLOBAL_TIME > 0)
+                && (visits == 1 || visits % TIME_CHECK_INTERVAL == 0)) {
+            long now = System.nanoTime();
+            return (METHOD_TIME <= 0 || getTime(now) <= METHOD_TIME)
+                    && (GLOBAL_TIME <= 0 || now - globalStart <= GLOBAL_TIME);
+        }
+        return true;
+    }
+
+    /**
+     * Logs that a method has been given up after exceeding this budget.
+     */
+    public void logSaturation(String solver, String analysis, String method) {
+        logger.warn("{} gave up {} on {} after {} visits in {} ms, saturated its facts",
+                solver, analysis, method, visits,
+                TimeUnit.NANOSECONDS.toMillis(getTime(System.nanoTime())));
+    }
+
+    private long getTime(long now) {
+        return interleaved ? time : now - start;
+    }
+
+    /**
+     * Thrown by {@link #recordVisit()} to abort the solve of a method
+     * which exceeds its budget.
+     */
+    static final class ExceededException extends RuntimeException {
+
+        private final SolverBudget budget;
+
+        private ExceededException(SolverBudget budget) {
+            super(null, null, false, false);
+            this.budget = budget;
+        }
+
+        SolverBudget getBudget() {
+            return budget;
+        }
+    }
+
+    /**
+     * Binds given budget to current thread. If the budget is null,
+     * solves on current thread are not limited until {@link #end}, even
+     * if an enclosing solve has bound a budget.
+     *
+     * @return the budget previously bound to current thread.
+     */
+    static SolverBudget begin(SolverBudget budget) {
+        SolverBudget previous = current.get();
+        current.set(budget);
+        return previous;
+    }
+
+    /**
+     * Restores the budget bound to current thread before {@link #begin}.
+     */
+    static void end(SolverBudget previous) {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+    /**
+     * Counts a visit in the budget bound to current thread, if any.
+     *
+     * @throws ExceededException if the budget is exceeded.
+     */
+    static void recordVisit() {
+        SolverBudget budget = current.get();
+        if (budget != null && !budget.visit()) {
+            throw new ExceededException(budget);
+        }
+    }
+}
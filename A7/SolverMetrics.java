@@ -0,0 +1,372 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.solver;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.analysis.dataflow.fact.MapFact;
+import pascal.taie.analysis.dataflow.fact.SetFact;
+import pascal.taie.util.AnalysisException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Per-method metrics of data-flow solvers: node visits, calls of transfer
+ * and meet functions, fact changes, wall time and peak fact size.
+ * <p>
+ * Metrics are disabled by default, and can be enabled by system property
+ * "taie.solver.metrics" or {@link #setEnabled(boolean)}. When disabled,
+ * solvers only read a flag per event. If system property
+ * "taie.solver.metrics.output" is set to a path ending with ".json" or
+ * ".csv", the metrics are exported there when the JVM exits.
+ */
+public final class SolverMetrics {
+
+    private static final Logger logger = LogManager.getLogger(SolverMetrics.class);
+
+    private static volatile boolean enabled =
+            Boolean.getBoolean("taie.solver.metrics");
+
+    private static final Queue<Record> records = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Record of the intra-procedural solve running on current thread.
+     */
+    private static final ThreadLocal<Record> current = new ThreadLocal<>();
+
+    static {
+        String output = System.getProperty("taie.solver.metrics.output");
+        if (output != null) {
+            if (isSupportedFormat(output)) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        export(Path.of(output));
+                    } catch (UncheckedIOException e) {
+                        logger.error("Failed to export solver metrics to {}", output, e);
+                    }
+                }));
+            } else {
+                logger.error("Unknown format of solver metrics: {}, "
+                        + "expected a path ending with .json or .csv", output);
+            }
+        }
+    }
+
+    private SolverMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        SolverMetrics.enabled = enabled;
+    }
+
+    /**
+     * @return records of all finished solves, in order of completion.
+     */
+    public static List<Record> getRecords() {
+        return List.copyOf(records);
+    }
+
+    public static void reset() {
+        records.clear();
+    }
+
+    /**
+     * Metrics of solving one method.
+     */
+    public static final class Record {
+
+        private final String solver;
+
+        private final String analysis;
+
+        private final String method;
+
+        private final long startTime = System.nanoTime();
+
+        private long visits;
+
+        private long transfers;
+
+        private long meets;
+
+        private long changes;
+
+        private long wallTime;
+
+        private long peakFactSize;
+
+        /**
+         * Record bound to current thread before this one, which is
+         * restored by {@link #end(Record)}.
+         */
+        private Record previous;
+
+        Record(String solver, String analysis, String method) {
+            this.solver = solver;
+            this.analysis = analysis;
+            this.method = method;
+        }
+
+        public String getSolver() {
+            return solver;
+        }
+
+        public String getAnalysis() {
+            return analysis;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public long getVisits() {
+            return visits;
+        }
+
+        public long getTransfers() {
+            return transfers;
+        }
+
+        public long getMeets() {
+            return meets;
+        }
+
+        /**
+         * @return number of transfers which changed their output facts.
+         */
+        public long getChanges() {
+            return changes;
+        }
+
+        /**
+         * @return wall time in nanoseconds.
+         */
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        /**
+         * @return the largest size of the facts changed by transfers,
+         * or 0 if the facts are neither {@link SetFact}s nor {@link MapFact}s.
+         */
+        public long getPeakFactSize() {
+            return peakFactSize;
+        }
+
+        public void visit() {
+            ++visits;
+        }
+
+        public void meet() {
+            ++meets;
+        }
+
+        public void transfer(boolean changed, Object fact) {
+            ++transfers;
+            if (changed) {
+                ++changes;
+                peakFactSize = Math.max(peakFactSize, sizeOf(fact));
+            }
+        }
+
+        /**
+         * Adds elapsed time to this record, for solvers which
+         * interleave the work on several methods.
+         */
+        public void addTime(long nanos) {
+            wallTime += nanos;
+        }
+    }
+
+    /**
+     * Starts recording the solve of a method on current thread.
+     * The record of an enclosing solve on the same thread, if any,
+     * is saved and restored by {@link #end(Record)}.
+     *
+     * @return the new record, or null if metrics are disabled.
+     */
+    static Record begin(String solver, String analysis, String method) {
+        if (!enabled) {
+            return null;
+        }
+        Record record = new Record(solver, analysis, method);
+        record.previous = current.get();
+        current.set(record);
+        return record;
+    }
+
+    /**
+     * Finishes given record which was returned by {@link #begin},
+     * and restores the record bound to current thread before it.
+     */
+    static void end(Record record) {
+        if (record != null) {
+            record.wallTime = System.nanoTime() - record.startTime;
+            if (record.previous == null) {
+                current.remove();
+            } else {
+                current.set(record.previous);
+                record.previous = null;
+            }
+            records.add(record);
+        }
+    }
+
+    /**
+     * Creates a record which is not bound to current thread, and is
+     * finished by {@link #finish(Record)}. Used by inter-procedural
+     * solvers, which keep one record for each method.
+     */
+    public static Record newRecord(String solver, String analysis, String method) {
+        return new Record(solver, analysis, method);
+    }
+
+    public static void finish(Record record) {
+        records.add(record);
+    }
+
+    static void recordVisit() {
+        Record record = current.get();
+        if (record != null) {
+            record.visit();
+        }
+    }
+
+    static void recordMeet() {
+        Record record = current.get();
+        if (record != null) {
+            record.meet();
+        }
+    }
+
+    static void recordTransfer(boolean changed, Object fact) {
+        Record record = current.get();
+        if (record != null) {
+            record.transfer(changed, fact);
+        }
+    }
+
+    private static long sizeOf(Object fact) {
+        if (fact instanceof SetFact<?> setFact) {
+            return setFact.size();
+        }
+        if (fact instanceof MapFact<?, ?> mapFact) {
+            return mapFact.size();
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if the records can be exported to given path,
+     * i.e., it ends with ".json" or ".csv".
+     */
+    private static boolean isSupportedFormat(String path) {
+        return path.endsWith(".json") || path.endsWith(".csv");
+    }
+
+    /**
+     * Exports the records to given file, in JSON or CSV
+     * according to the extension of the file.
+     */
+    public static void export(Path path) {
+        String name = path.getFileName().toString();
+        if (!isSupportedFormat(name)) {
+            throw new AnalysisException("Unknown format of solver metrics: " + name);
+        }
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            if (name.endsWith(".json")) {
+                writeJson(writer);
+            } else {
+                writeCsv(writer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void writeJson(Writer writer) throws IOException {
+        writer.write("[\n");
+        boolean first = true;
+        for (Record r : records) {
+            if (!first) {
+                writer.write(",\n");
+            }
+            first = false;
+            writer.write("  {\"solver\": " + quoteJson(r.solver)
+                    + ", \"analysis\": " + quoteJson(r.analysis)
+                    + ", \"method\": " + quoteJson(r.method)
+                    + ", \"visits\": " + r.visits
+                    + ", \"transfers\": " + r.transfers
+                    + ", \"meets\": " + r.meets
+                    + ", \"changes\": " + r.changes
+                    + ", \"wallTimeNanos\": " + r.wallTime
+                    + ", \"peakFactSize\": " + r.peakFactSize + "}");
+        }
+        writer.write("\n]\n");
+    }
+
+    public static void writeCsv(Writer writer) throws IOException {
+        writer.write("solver,analysis,method,visits,transfers,meets,changes,wallTimeNanos,peakFactSize\n");
+        for (Record r : records) {
+            writer.write(quoteCsv(r.solver) + "," + quoteCsv(r.analysis) + ","
+                    + quoteCsv(r.method) + "," + r.visits + "," + r.transfers + ","
+                    + r.meets + "," + r.changes + "," + r.wallTime + ","
+                    + r.peakFactSize + "\n");
+        }
+    }
+
+    private static String quoteJson(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String quoteCsv(String s) {
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+}
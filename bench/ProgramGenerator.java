@@ -0,0 +1,333 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic Java programs for scaling tests of the analyses.
+ * The programs are emitted as sources and fed through the frontend,
+ * like the course test cases.
+ * <p>
+ * Each generated class has a main method and a number of static methods
+ * on int variables. Their bodies mix arithmetic, if-else branches, nested
+ * while loops and switches, calls of other generated methods, and
+ * patterns for dead code detection (branches on constants and
+ * overwritten assignments). Generation is deterministic for a seed.
+ * <p>
+ * Usage: {@code ProgramGenerator -o <output-dir> [-c <class-name>]
+ * [-m <methods>] [-s <statements>[,<statements>...]] [-d <loop-depth>]
+ * [-f <switch-fan-out>] [-v <int-vars>] [-seed <seed>]}.
+ * Several comma-separated sizes emit one class per size, named
+ * {@code <class-name><size>}, for drawing time-versus-size curves.
+ */
+public class ProgramGenerator {
+
+    /**
+     * Shape of generated programs.
+     *
+     * @param methods     number of methods besides main
+     * @param statements  approximate number of statements per method
+     * @param loopDepth   maximal nesting depth of loops
+     * @param switchFanOut number of cases of each switch
+     * @param intVars     number of int variables per method
+     * @param seed        seed of the random generator
+     */
+    public record Config(int methods, int statements, int loopDepth,
+                         int switchFanOut, int intVars, long seed) {
+
+        public Config {
+            if (methods < 1 || statements < 1 || loopDepth < 0
+                    || switchFanOut < 1 || intVars < 1) {
+                throw new IllegalArgumentException(String.format(
+                        "Invalid generator config: methods=%d, statements=%d, loopDepth=%d,"
+                                + " switchFanOut=%d, intVars=%d",
+                        methods, statements, loopDepth, switchFanOut, intVars));
+            }
+        }
+    }
+
+    private static final String[] ARITH_OPS = {"+", "-", "*", "&", "|", "^"};
+
+    private static final String[] SHIFT_OPS = {"<<", ">>", ">>>"};
+
+    private static final String[] COND_OPS = {"==", "!=", "<", ">", "<=", ">="};
+
+    private final Config config;
+
+    private final Random random;
+
+    private final StringBuilder out = new StringBuilder();
+
+    private int indent;
+
+    /**
+     * Statements left for the method being generated.
+     */
+    private int budget;
+
+    private ProgramGenerator(Config config) {
+        this.config = config;
+        this.random = new Random(config.seed());
+    }
+
+    /**
+     * @return source code of a class with given name and shape.
+     */
+    public static String generate(String className, Config config) {
+        return new ProgramGenerator(config).generateClass(className);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path outputDir = null;
+        String className = "Synthetic";
+        int methods = 10;
+        List<Integer> sizes = List.of(100);
+        int loopDepth = 3;
+        int fanOut = 4;
+        int intVars = 8;
+        long seed = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "-o" -> outputDir = Path.of(value);
+                case "-c" -> className = value;
+                case "-m" -> methods = Integer.parseInt(value);
+                case "-s" -> {
+                    List<Integer> list = new ArrayList<>();
+                    for (String size : value.split(",")) {
+                        list.add(Integer.parseInt(size.trim()));
+                    }
+                    sizes = list;
+                }
+                case "-d" -> loopDepth = Integer.parseInt(value);
+                case "-f" -> fanOut = Integer.parseInt(value);
+                case "-v" -> intVars = Integer.parseInt(value);
+                case "-seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (outputDir == null) {
+            System.err.println("Usage: ProgramGenerator -o <output-dir> [-c <class-name>]"
+                    + " [-m <methods>] [-s <statements>[,<statements>...]] [-d <loop-depth>]"
+                    + " [-f <switch-fan-out>] [-v <int-vars>] [-seed <seed>]");
+            System.exit(1);
+        }
+        Files.createDirectories(outputDir);
+        for (int size : sizes) {
+            String name = sizes.size() == 1 ? className : className + size;
+            Config config = new Config(methods, size, loopDepth, fanOut, intVars, seed);
+            Files.writeString(outputDir.resolve(name + ".java"), generate(name, config));
+        }
+    }
+
+    private String generateClass(String className) {
+        line("class " + className + " {");
+        ++indent;
+        line("");
+        line("public static void main(String[] args) {");
+        ++indent;
+        line("int r = args.length;");
+        for (int m = 0; m < config.methods(); ++m) {
+            line("r = r + m" + m + "(r, " + m + ");");
+        }
+        line("System.out.println(r);");
+        --indent;
+        line("}");
+        for (int m = 0; m < config.methods(); ++m) {
+            line("");
+            generateMethod(m);
+        }
+        --indent;
+        line("}");
+        return out.toString();
+    }
+
+    private void generateMethod(int m) {
+        line("static int m" + m + "(int p0, int p1) {");
+        ++indent;
+        for (int v = 0; v < config.intVars(); ++v) {
+            line("int v" + v + " = " + (v < 2 ? "p" + v : random.nextInt(10)) + ";");
+        }
+        budget = config.statements();
+        while (budget > 0) {
+            generateStatement(m, 0, 0);
+        }
+        line("return " + var() + ";");
+        --indent;
+        line("}");
+    }
+
+    private void generateStatement(int m, int depth, int loopDepth) {
+        --budget;
+        int kind = random.nextInt(20);
+        if (kind < 3 && depth < 8) {
+            generateIf(m, depth, loopDepth);
+        } else if (kind < 5 && loopDepth < config.loopDepth()) {
+            generateLoop(m, depth, loopDepth);
+        } else if (kind < 6 && depth < 8) {
+            generateSwitch(m, depth, loopDepth);
+        } else if (kind < 7 && m > 0) {
+            // calls only earlier methods to keep the call graph acyclic
+            line(var() + " = m" + random.nextInt(m) + "(" + var() + ", " + var() + ");");
+        } else if (kind < 8) {
+            generateDeadCode(m, depth, loopDepth);
+        } else {
+            line(var() + " = " + expression() + ";");
+        }
+    }
+
+    private void generateIf(int m, int depth, int loopDepth) {
+        line("if (" + condition() + ") {");
+        generateBlock(m, depth + 1, loopDepth);
+        if (random.nextBoolean()) {
+            line("} else {");
+            generateBlock(m, depth + 1, loopDepth);
+        }
+        line("}");
+    }
+
+    private void generateLoop(int m, int depth, int loopDepth) {
+        String counter = var();
+        line("while (" + counter + " < " + (1 + random.nextInt(100)) + ") {");
+        generateBlock(m, depth + 1, loopDepth + 1);
+        ++indent;
+        line(counter + " = " + counter + " + 1;");
+        --indent;
+        line("}");
+    }
+
+    private void generateSwitch(int m, int depth, int loopDepth) {
+        line("switch (" + var() + ") {");
+        ++indent;
+        for (int c = 0; c < config.switchFanOut(); ++c) {
+            line("case " + c + ":");
+            generateBlock(m, depth + 1, loopDepth);
+            ++indent;
+            line("break;");
+            --indent;
+        }
+        line("default:");
+        generateBlock(m, depth + 1, loopDepth);
+        --indent;
+        line("}");
+    }
+
+    /**
+     * Generates a branch on a variable which is constant, or an
+     * assignment which is overwritten before being used.
+     */
+    private void generateDeadCode(int m, int depth, int loopDepth) {
+        if (random.nextBoolean() && depth < 8) {
+            String v = var();
+            int value = random.nextInt(10);
+            line(v + " = " + value + ";");
+            line("if (" + v + " > " + (value + 1 + random.nextInt(10)) + ") {");
+            generateBlock(m, depth + 1, loopDepth);
+            line("}");
+        } else {
+            String v = var();
+            line(v + " = " + expression() + ";");
+            // the second right-hand side must not read v, which would
+            // make the first assignment live
+            line(v + " = " + (config.intVars() > 1
+                    ? expression(v) : Integer.toString(random.nextInt(100))) + ";");
+        }
+    }
+
+    /**
+     * Generates a nested block which consumes a part of the budget.
+     */
+    private void generateBlock(int m, int depth, int loopDepth) {
+        ++indent;
+        int size = 1 + random.nextInt(Math.max(1, Math.min(budget, 6)));
+        for (int i = 0; i < size && budget > 0; ++i) {
+            generateStatement(m, depth, loopDepth);
+        }
+        --indent;
+    }
+
+    private String expression() {
+        return expression(null);
+    }
+
+    /**
+     * @param excluded variable which the expression must not read,
+     *                 or null if it may read any variable
+     */
+    private String expression(String excluded) {
+        int kind = random.nextInt(10);
+        if (kind < 2) {
+            return Integer.toString(random.nextInt(100));
+        } else if (kind < 3) {
+            return var(excluded);
+        } else if (kind < 4) {
+            // divisors are non-zero literals
+            return var(excluded) + (random.nextBoolean() ? " / " : " % ") + (1 + random.nextInt(9));
+        } else if (kind < 5) {
+            return var(excluded) + " " + pick(SHIFT_OPS) + " " + random.nextInt(32);
+        } else if (kind < 8) {
+            return var(excluded) + " " + pick(ARITH_OPS) + " " + var(excluded);
+        } else {
+            return var(excluded) + " " + pick(ARITH_OPS) + " " + random.nextInt(100);
+        }
+    }
+
+    private String condition() {
+        return var() + " " + pick(COND_OPS) + " "
+                + (random.nextBoolean() ? var() : Integer.toString(random.nextInt(100)));
+    }
+
+    private String var() {
+        return "v" + random.nextInt(config.intVars());
+    }
+
+    /**
+     * @param excluded variable which must not be picked, or null;
+     *                 at least one other variable must exist
+     */
+    private String var(String excluded) {
+        if (excluded == null) {
+            return var();
+        }
+        int skip = Integer.parseInt(excluded.substring(1));
+        int i = random.nextInt(config.intVars() - 1);
+        return "v" + (i >= skip ? i + 1 : i);
+    }
+
+    private String pick(String[] choices) {
+        return choices[random.nextInt(choices.length)];
+    }
+
+    private void line(String s) {
+        if (!s.isEmpty()) {
+            out.append("    ".repeat(indent)).append(s);
+        }
+        out.append('\n');
+    }
+}
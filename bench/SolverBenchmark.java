@@ -0,0 +1,444 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.bench;
+
+import pascal.taie.Main;
+import pascal.taie.World;
+import pascal.taie.analysis.MethodAnalysis;
+import pascal.taie.analysis.dataflow.analysis.LiveVariableAnalysis;
+import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import pascal.taie.analysis.dataflow.inter.InterConstantPropagation;
+import pascal.taie.analysis.dataflow.solver.ResultCache;
+import pascal.taie.analysis.dataflow.solver.SolverMetrics;
+import pascal.taie.analysis.graph.callgraph.CallGraph;
+import pascal.taie.analysis.graph.callgraph.CallGraphBuilder;
+import pascal.taie.analysis.graph.cfg.CFGBuilder;
+import pascal.taie.analysis.graph.icfg.ICFGBuilder;
+import pascal.taie.config.AnalysisConfig;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.JMethod;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmarks intra-procedural constant propagation and live variable
+ * analysis under each solver and fact representation, on all concrete
+ * methods of the application classes of a program. The InterSolver is
+ * benchmarked with interprocedural constant propagation over the ICFG of
+ * the methods reachable in the CHA call graph of the program.
+ * <p>
+ * Each configuration is measured in a fresh JVM, so that the JIT profile
+ * of one configuration does not depend on the ones measured before it.
+ * The configurations are run several times ("forks"), each time in a
+ * random order, and the mean, minimum and maximum throughput over the
+ * forks are reported. {@link ResultCache} is disabled in the forked JVMs,
+ * thus every iteration solves every method.
+ * <p>
+ * For every configuration, the benchmark reports throughput (methods
+ * analyzed per second), bytes allocated per method, and the solver work
+ * per method (node visits, transfers and meets) from {@link SolverMetrics}.
+ * Timing and allocation are measured with metrics disabled; the work
+ * counts are collected in a separate pass.
+ * <p>
+ * Allocated bytes are read from the allocation counter of the benchmark
+ * thread, thus allocations made by other threads are not counted, and
+ * objects which are pooled or reused are counted only when allocated.
+ * A GC profiler is needed to see the retained memory.
+ * <p>
+ * Usage: {@code SolverBenchmark -cp <class-path> -m <main-class>
+ * [-w <warmup-iterations>] [-i <iterations>] [-f <forks>] [-seed <seed>]
+ * [-o <csv-file>]}
+ */
+public class SolverBenchmark {
+
+    private static final List<Object[]> SOLVERS = List.of(
+            new Object[]{"solver", "iterative"},
+            new Object[]{"solver", "worklist"},
+            new Object[]{"solver", "worklist", "delta", true},
+            new Object[]{"solver", "block"},
+            new Object[]{"solver", "wto"});
+
+    private static final List<String> CP_FACTS = List.of("map", "array", "persistent");
+
+    /**
+     * Prefix of the line by which a forked JVM reports its measurement.
+     */
+    private static final String ROW_PREFIX = "@row ";
+
+    private static final String HEADER = "analysis,solver,fact,methods,"
+            + "ops/s,ops/s-min,ops/s-max,bytes/op,visits/op,transfers/op,meets/op";
+
+    /**
+     * A configuration to measure.
+     *
+     * @param analysis ID of the analysis
+     * @param solver   solver options of intra-procedural analyses,
+     *                 null for {@link InterConstantPropagation}
+     * @param fact     fact representation
+     */
+    private record Configuration(String analysis, Object[] solver, String fact) {
+
+        private String solverName() {
+            return solver != null ? describe(solver) : "inter";
+        }
+    }
+
+    private final List<IR> corpus;
+
+    private final int warmups;
+
+    private final int iterations;
+
+    SolverBenchmark(List<IR> corpus, int warmups, int iterations) {
+        this.corpus = corpus;
+        this.warmups = warmups;
+        this.iterations = iterations;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String classPath = null;
+        String mainClass = null;
+        String output = null;
+        int warmups = 5;
+        int iterations = 10;
+        int forks = 3;
+        long seed = System.nanoTime();
+        int config = -1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-cp" -> classPath = args[i + 1];
+                case "-m" -> mainClass = args[i + 1];
+                case "-w" -> warmups = Integer.parseInt(args[i + 1]);
+                case "-i" -> iterations = Integer.parseInt(args[i + 1]);
+                case "-f" -> forks = Integer.parseInt(args[i + 1]);
+                case "-seed" -> seed = Long.parseLong(args[i + 1]);
+                case "-o" -> output = args[i + 1];
+                // internal option of forked JVMs
+                case "-config" -> config = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (classPath == null || mainClass == null || forks < 1) {
+            System.err.println("Usage: SolverBenchmark -cp <class-path> -m <main-class>"
+                    + " [-w <warmup-iterations>] [-i <iterations>] [-f <forks>]"
+                    + " [-seed <seed>] [-o <csv-file>]");
+            System.exit(1);
+        }
+        if (config >= 0) {
+            measureInFork(configurations().get(config), classPath, mainClass,
+                    warmups, iterations);
+            return;
+        }
+        List<String> rows = runForks(classPath, mainClass, warmups, iterations, forks, seed);
+        System.out.printf("%d configurations, %d forks in random order (seed %d),"
+                        + " %d warm-up and %d measured iterations%n",
+                configurations().size(), forks, seed, warmups, iterations);
+        print(rows, System.out);
+        if (output != null) {
+            Files.write(Path.of(output), rows);
+        }
+    }
+
+    /**
+     * @return all configurations to measure, in a fixed order.
+     */
+    private static List<Configuration> configurations() {
+        List<Configuration> configs = new ArrayList<>();
+        for (Object[] solver : SOLVERS) {
+            for (String fact : CP_FACTS) {
+                configs.add(new Configuration(ConstantPropagation.ID, solver, fact));
+            }
+            configs.add(new Configuration(LiveVariableAnalysis.ID, solver, "bitset"));
+        }
+        // InterConstantPropagation uses the default CP fact, i.e., "array"
+        configs.add(new Configuration(InterConstantPropagation.ID, null, "array"));
+        return configs;
+    }
+
+    /**
+     * Measures every configuration in a fresh JVM, for given number of
+     * forks, each of which runs the configurations in a random order.
+     *
+     * @return CSV rows of the header and the configurations, in the order
+     * of {@link #configurations()}.
+     */
+    private static List<String> runForks(String classPath, String mainClass,
+                                         int warmups, int iterations,
+                                         int forks, long seed)
+            throws IOException, InterruptedException {
+        List<Configuration> configs = configurations();
+        List<List<String[]>> measurements = new ArrayList<>();
+        for (int i = 0; i < configs.size(); ++i) {
+            measurements.add(new ArrayList<>());
+        }
+        Random random = new Random(seed);
+        for (int round = 0; round < forks; ++round) {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < configs.size(); ++i) {
+                order.add(i);
+            }
+            Collections.shuffle(order, random);
+            for (int i : order) {
+                measurements.get(i).add(fork(i, classPath, mainClass, warmups, iterations));
+            }
+        }
+        List<String> rows = new ArrayList<>();
+        rows.add(HEADER);
+        for (int i = 0; i < configs.size(); ++i) {
+            rows.add(summarize(configs.get(i), measurements.get(i)));
+        }
+        return rows;
+    }
+
+    /**
+     * Runs given configuration in a new JVM, which inherits the class path
+     * and the -X options of this JVM, but no system properties.
+     *
+     * @return the cells of the row reported by the forked JVM, i.e.,
+     * methods, ops/s, bytes/op, visits/op, transfers/op and meets/op.
+     */
+    private static String[] fork(int config, String classPath, String mainClass,
+                                 int warmups, int iterations)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-X")) {
+                command.add(arg);
+            }
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"),
+                SolverBenchmark.class.getName(),
+                "-cp", classPath, "-m", mainClass,
+                "-w", String.valueOf(warmups), "-i", String.valueOf(iterations),
+                "-config", String.valueOf(config)));
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .start();
+        String row = null;
+        List<String> log = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(ROW_PREFIX)) {
+                    row = line.substring(ROW_PREFIX.length());
+                } else {
+                    log.add(line);
+                }
+            }
+        }
+        int exit = process.waitFor();
+        if (exit != 0 || row == null) {
+            log.forEach(System.err::println);
+            throw new IllegalStateException("Forked benchmark of configuration "
+                    + configurations().get(config) + " failed with exit code " + exit);
+        }
+        return row.split(",");
+    }
+
+    /**
+     * @param cells rows reported by the forks of given configuration
+     * @return CSV row with the mean, minimum and maximum throughput,
+     * and the means of the other measurements.
+     */
+    private static String summarize(Configuration config, List<String[]> cells) {
+        int forks = cells.size();
+        double ops = 0, minOps = Double.MAX_VALUE, maxOps = 0;
+        double bytes = 0, visits = 0, transfers = 0, meets = 0;
+        for (String[] c : cells) {
+            double o = Double.parseDouble(c[1]);
+            ops += o;
+            minOps = Math.min(minOps, o);
+            maxOps = Math.max(maxOps, o);
+            bytes += Double.parseDouble(c[2]);
+            visits += Double.parseDouble(c[3]);
+            transfers += Double.parseDouble(c[4]);
+            meets += Double.parseDouble(c[5]);
+        }
+        return String.format(Locale.ROOT, "%s,%s,%s,%s,%.1f,%.1f,%.1f,%.0f,%.1f,%.1f,%.1f",
+                config.analysis(), config.solverName(), config.fact(), cells.get(0)[0],
+                ops / forks, minOps, maxOps, bytes / forks,
+                visits / forks, transfers / forks, meets / forks);
+    }
+
+    /**
+     * Measures given configuration in this JVM, which has been forked
+     * for it, and reports the measurement on the standard output.
+     */
+    private static void measureInFork(Configuration config, String classPath,
+                                      String mainClass, int warmups, int iterations) {
+        ResultCache.setEnabled(false);
+        Main.buildWorld("-cp", classPath, "-m", mainClass);
+        SolverBenchmark benchmark = new SolverBenchmark(buildCorpus(), warmups, iterations);
+        String row;
+        if (config.solver() == null) {
+            int icfgMethods = buildICFG();
+            row = benchmark.measure(icfgMethods, () -> new InterConstantPropagation(
+                    new AnalysisConfig(InterConstantPropagation.ID)).analyze());
+        } else {
+            Object[] options = config.analysis().equals(ConstantPropagation.ID)
+                    ? withOption(config.solver(), "fact", config.fact())
+                    : config.solver();
+            AnalysisConfig analysisConfig = new AnalysisConfig(config.analysis(), options);
+            MethodAnalysis analysis = config.analysis().equals(ConstantPropagation.ID)
+                    ? new ConstantPropagation(analysisConfig)
+                    : new LiveVariableAnalysis(analysisConfig);
+            row = benchmark.measure(benchmark.corpus.size(),
+                    () -> benchmark.analyzeCorpus(analysis));
+        }
+        System.out.println(ROW_PREFIX + row);
+    }
+
+    /**
+     * @return IRs of all concrete methods in application classes,
+     * in a fixed order, with their CFGs built.
+     */
+    static List<IR> buildCorpus() {
+        CFGBuilder cfgBuilder = new CFGBuilder(new AnalysisConfig(CFGBuilder.ID,
+                "exception", "explicit", "dump", false));
+        List<IR> corpus = new ArrayList<>();
+        World.get().getClassHierarchy()
+                .applicationClasses()
+                .flatMap(c -> c.getDeclaredMethods().stream())
+                .filter(m -> !m.isAbstract() && !m.isNative())
+                .sorted(Comparator.comparing(JMethod::toString))
+                .forEach(m -> {
+                    IR ir = m.getIR();
+                    ir.storeResult(CFGBuilder.ID, cfgBuilder.analyze(ir));
+                    corpus.add(ir);
+                });
+        return corpus;
+    }
+
+    /**
+     * Builds the CHA call graph and the ICFG of the program, and stores
+     * them in the world for {@link InterConstantPropagation}.
+     *
+     * @return number of methods in the ICFG.
+     */
+    static int buildICFG() {
+        CallGraph<Invoke, JMethod> callGraph = new CallGraphBuilder(
+                new AnalysisConfig(CallGraphBuilder.ID, "algorithm", "cha")).analyze();
+        World.get().storeResult(CallGraphBuilder.ID, callGraph);
+        CFGBuilder cfgBuilder = new CFGBuilder(new AnalysisConfig(CFGBuilder.ID,
+                "exception", "explicit", "dump", false));
+        List<JMethod> methods = callGraph.reachableMethods().toList();
+        for (JMethod method : methods) {
+            IR ir = method.getIR();
+            if (ir.getResult(CFGBuilder.ID) == null) {
+                ir.storeResult(CFGBuilder.ID, cfgBuilder.analyze(ir));
+            }
+        }
+        World.get().storeResult(ICFGBuilder.ID, new ICFGBuilder(
+                new AnalysisConfig(ICFGBuilder.ID, "dump", false)).analyze());
+        return methods.size();
+    }
+
+    /**
+     * @param methods number of methods analyzed by a pass
+     * @param pass    runs the analysis once
+     * @return CSV cells of methods, ops/s, bytes/op, visits/op,
+     * transfers/op and meets/op.
+     */
+    private String measure(int methods, Runnable pass) {
+        boolean metrics = SolverMetrics.isEnabled();
+        SolverMetrics.setEnabled(false);
+        for (int i = 0; i < warmups; ++i) {
+            pass.run();
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            pass.run();
+        }
+        long time = System.nanoTime() - start;
+        bytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+        // one more pass to count the work of the solver
+        SolverMetrics.reset();
+        SolverMetrics.setEnabled(true);
+        pass.run();
+        SolverMetrics.setEnabled(metrics);
+        long visits = 0, transfers = 0, meets = 0;
+        for (SolverMetrics.Record record : SolverMetrics.getRecords()) {
+            visits += record.getVisits();
+            transfers += record.getTransfers();
+            meets += record.getMeets();
+        }
+        SolverMetrics.reset();
+        double ops = (double) methods * iterations;
+        int size = Math.max(methods, 1);
+        return String.format(Locale.ROOT, "%d,%.1f,%.0f,%.1f,%.1f,%.1f",
+                methods, ops / (time / 1e9), bytes / ops,
+                (double) visits / size, (double) transfers / size, (double) meets / size);
+    }
+
+    private void analyzeCorpus(MethodAnalysis analysis) {
+        for (IR ir : corpus) {
+            analysis.analyze(ir);
+        }
+    }
+
+    private static void print(List<String> rows, PrintStream out) {
+        for (String row : rows) {
+            String[] cells = row.split(",");
+            out.printf("%-15s %-16s %-11s %8s %12s %12s %12s %12s %11s %13s %10s%n",
+                    (Object[]) cells);
+        }
+    }
+
+    private static Object[] withOption(Object[] options, String key, Object value) {
+        Object[] result = new Object[options.length + 2];
+        System.arraycopy(options, 0, result, 0, options.length);
+        result[options.length] = key;
+        result[options.length + 1] = value;
+        return result;
+    }
+
+    /**
+     * @return solver name of given options, e.g., "worklist+delta".
+     */
+    private static String describe(Object[] options) {
+        StringBuilder sb = new StringBuilder(options[1].toString());
+        for (int i = 2; i + 1 < options.length; i += 2) {
+            sb.append('+').append(options[i]);
+        }
+        return sb.toString();
+    }
+}